@@ -0,0 +1,17 @@
+package com.arquivolivre.elastikjay.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ *
+ * @author Thiago da Silva Gonzaga <thiagosg@sjrp.unesp.br>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface IncludeInAll {
+
+    boolean value() default true;
+}
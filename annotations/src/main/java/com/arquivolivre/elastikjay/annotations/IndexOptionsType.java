@@ -0,0 +1,18 @@
+package com.arquivolivre.elastikjay.annotations;
+
+/**
+ *
+ * @author Thiago da Silva Gonzaga <thiagosg@sjrp.unesp.br>
+ */
+public enum IndexOptionsType {
+
+    DOCS,
+    FREQS,
+    POSITIONS,
+    OFFSETS;
+
+    @Override
+    public String toString() {
+        return this.name().toLowerCase();
+    }
+}
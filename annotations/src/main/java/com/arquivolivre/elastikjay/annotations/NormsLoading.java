@@ -0,0 +1,17 @@
+package com.arquivolivre.elastikjay.annotations;
+
+/**
+ *
+ * @author Thiago da Silva Gonzaga <thiagosg@sjrp.unesp.br>
+ */
+public enum NormsLoading {
+
+    LAZY,
+    EAGER,
+    NONE;
+
+    @Override
+    public String toString() {
+        return this.name().toLowerCase();
+    }
+}
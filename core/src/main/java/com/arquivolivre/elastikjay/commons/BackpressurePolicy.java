@@ -0,0 +1,36 @@
+package com.arquivolivre.elastikjay.commons;
+
+/**
+ * Comportamento da {@link IngestQueue} quando o limite de documentos ou de
+ * bytes é atingido.
+ *
+ * @author Thiago da Silva Gonzaga <thiagosg@sjrp.unesp.br>
+ */
+public enum BackpressurePolicy {
+
+    /**
+     * bloqueia o produtor até que haja espaço na fila. Requer uma thread
+     * consumidora separada chamando
+     * {@link IndexManager#executeQueuedBulk()}, caso contrário o produtor
+     * espera para sempre.
+     */
+    BLOCK,
+    /**
+     * bloqueia o produtor até o tempo limite configurado e descarta o
+     * documento caso ainda não haja espaço.
+     */
+    TIMEOUT,
+    /**
+     * descarta os documentos mais antigos da fila para abrir espaço.
+     */
+    DROP_OLDEST,
+    /**
+     * rejeita imediatamente o novo documento.
+     */
+    REJECT;
+
+    @Override
+    public String toString() {
+        return this.name().toLowerCase();
+    }
+}
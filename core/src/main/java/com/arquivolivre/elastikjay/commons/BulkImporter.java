@@ -0,0 +1,564 @@
+package com.arquivolivre.elastikjay.commons;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import org.apache.log4j.Logger;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequestBuilder;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.rest.RestStatus;
+
+/**
+ * Importa arquivos NDJSON ou CSV para o indice de uma classe anotada com
+ * {@code @Index}. O arquivo é lido por mapeamento em memória e dividido em
+ * blocos terminados em fim de linha. Os blocos são lidos, convertidos e
+ * enviados em requisições em massa concorrentes por um conjunto de threads.
+ *
+ * <p>
+ * O checkpoint informado ao {@link ImportListener} só avança sobre blocos
+ * contíguos cujos documentos foram todos indexados, então retomar a partir
+ * dele pode reenviar documentos que já haviam sido indexados. Use um
+ * {@code idField} para que o reenvio sobrescreva em vez de duplicar. Itens
+ * rejeitados por sobrecarga do cluster são reenviados com espera crescente.
+ * Linhas que não puderam ser lidas são contadas como falhas e não retêm o
+ * checkpoint.</p>
+ *
+ * <p>
+ * Caso um bloco falhe por completo, por exemplo porque o cluster ficou
+ * indisponível, nenhum outro bloco é iniciado e a importação termina com a
+ * exceção do bloco.</p>
+ *
+ * @author Thiago da Silva Gonzaga <thiagosg@sjrp.unesp.br>
+ */
+public class BulkImporter {
+
+    public static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+    public static final int DEFAULT_BULK_ACTIONS = 1000;
+    public static final int DEFAULT_MAX_RETRIES = 3;
+    public static final long DEFAULT_RETRY_BACKOFF_MILLIS = 100;
+
+    private final IndexManager indexManager;
+    private ImportFormat format = ImportFormat.NDJSON;
+    private boolean raw;
+    private String idField;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    private int bulkActions = DEFAULT_BULK_ACTIONS;
+    private int maxRetries = DEFAULT_MAX_RETRIES;
+    private long retryBackoffMillis = DEFAULT_RETRY_BACKOFF_MILLIS;
+    private ImportListener listener;
+    private final Logger logger = Logger.getLogger(BulkImporter.class);
+
+    BulkImporter(IndexManager indexManager) {
+        this.indexManager = indexManager;
+    }
+
+    public static BulkImporter build(IndexManager indexManager) {
+        return new BulkImporter(indexManager);
+    }
+
+    /**
+     * importa o arquivo inteiro.
+     *
+     * @see #importFile(File, Class, long)
+     */
+    public long importFile(File file, Class<?> clazz) throws IOException, InterruptedException {
+        return importFile(file, clazz, 0);
+    }
+
+    /**
+     * importa o arquivo a partir da posição informada.
+     *
+     * @param file arquivo NDJSON ou CSV
+     * @param clazz classe anotada com {@code @Index} que define o indice e,
+     * fora do modo raw, o tipo dos documentos
+     * @param offset posição inicial, em bytes; deve ser 0 ou um checkpoint de
+     * uma importação anterior
+     * @return checkpoint final; igual ao tamanho do arquivo caso todos os
+     * blocos tenham sido concluídos
+     * @throws IOException caso o arquivo não possa ser lido
+     * @throws InterruptedException caso a thread seja interrompida
+     * @throws org.elasticsearch.ElasticsearchException caso um bloco falhe
+     * ao ser enviado ao cluster
+     */
+    public long importFile(File file, Class<?> clazz, long offset) throws IOException, InterruptedException {
+        if (raw && format != ImportFormat.NDJSON) {
+            throw new IllegalArgumentException("Raw mode is only supported for NDJSON files.");
+        }
+        indexManager.ensureIndex(clazz);
+        IndexInfo indexInfo = indexManager.getIndexInfo(clazz);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            String[] header = null;
+            long position = offset;
+            if (format == ImportFormat.CSV) {
+                long headerEnd = findChunkEnd(channel, 0, size, true);
+                header = parseCsvLine(decode(channel.map(FileChannel.MapMode.READ_ONLY, 0, headerEnd)));
+                position = Math.max(position, headerEnd);
+            }
+            Job job = new Job(channel, clazz, indexInfo, header, position, size);
+            logger.info(String.format("Importing %s into index %s from offset %d...", file, indexInfo.getName(), position));
+            Semaphore inFlight = new Semaphore(threads * 2);
+            List<Future<?>> futures = new ArrayList<>();
+            while (position < size && !job.isFailed()) {
+                long end = findChunkEnd(channel, position, size, false);
+                inFlight.acquire();
+                futures.add(executor.submit(new ChunkTask(job, position, end, inFlight)));
+                position = end;
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException ex) {
+                    job.fail(new IllegalStateException(ex.getCause()));
+                }
+            }
+            ImportProgress progress = job.getProgress();
+            Exception failure = job.getFailure();
+            if (failure != null) {
+                logger.error(String.format("Import aborted: %d documents, %d failures, checkpoint %d of %d bytes.",
+                        progress.getDocuments(), progress.getFailures(), progress.getCheckpoint(), size));
+                if (failure instanceof IOException) {
+                    throw (IOException) failure;
+                }
+                if (failure instanceof InterruptedException) {
+                    throw (InterruptedException) failure;
+                }
+                throw (RuntimeException) failure;
+            }
+            logger.info(String.format("Import finished: %d documents, %d failures, checkpoint %d of %d bytes.",
+                    progress.getDocuments(), progress.getFailures(), progress.getCheckpoint(), size));
+            return progress.getCheckpoint();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * procura o fim do bloco que começa em start: a última quebra de linha
+     * dentro de chunkSize bytes, ou a primeira quebra de linha caso firstLine
+     * seja verdadeiro. A janela é ampliada caso uma linha não caiba nela.
+     */
+    long findChunkEnd(FileChannel channel, long start, long size, boolean firstLine) throws IOException {
+        long window = Math.min(chunkSize, size - start);
+        while (true) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, window);
+            int limit = buffer.limit();
+            if (firstLine) {
+                for (int i = 0; i < limit; i++) {
+                    if (buffer.get(i) == '\n') {
+                        return start + i + 1;
+                    }
+                }
+            } else {
+                for (int i = limit - 1; i >= 0; i--) {
+                    if (buffer.get(i) == '\n') {
+                        return start + i + 1;
+                    }
+                }
+            }
+            if (start + window >= size) {
+                return size;
+            }
+            window = Math.min(Math.min(window * 2, Integer.MAX_VALUE), size - start);
+        }
+    }
+
+    private String decode(MappedByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8).trim();
+    }
+
+    /**
+     * divide uma linha CSV em valores, aceitando valores entre aspas com
+     * vírgulas e aspas duplicadas. Quebras de linha dentro de aspas não são
+     * suportadas.
+     */
+    static String[] parseCsvLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        current.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        values.add(current.toString());
+        return values.toArray(new String[values.size()]);
+    }
+
+    public ImportFormat getFormat() {
+        return format;
+    }
+
+    public void setFormat(ImportFormat format) {
+        this.format = format;
+    }
+
+    public boolean isRaw() {
+        return raw;
+    }
+
+    /**
+     * no modo raw as linhas NDJSON são enviadas sem serem convertidas para a
+     * classe; sem {@code idField} elas nem chegam a ser lidas como JSON.
+     *
+     * @param raw true para ativar o modo raw
+     */
+    public void setRaw(boolean raw) {
+        this.raw = raw;
+    }
+
+    public String getIdField() {
+        return idField;
+    }
+
+    /**
+     *
+     * @param idField campo de cada documento usado como id no indice; caso
+     * nulo, os ids são gerados pelo elasticsearch
+     */
+    public void setIdField(String idField) {
+        this.idField = idField;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Threads must be positive.");
+        }
+        this.threads = threads;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive.");
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    public int getBulkActions() {
+        return bulkActions;
+    }
+
+    public void setBulkActions(int bulkActions) {
+        if (bulkActions <= 0) {
+            throw new IllegalArgumentException("Bulk actions must be positive.");
+        }
+        this.bulkActions = bulkActions;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     *
+     * @param maxRetries número de vezes que itens rejeitados por sobrecarga
+     * são reenviados
+     */
+    public void setMaxRetries(int maxRetries) {
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("Max retries must not be negative.");
+        }
+        this.maxRetries = maxRetries;
+    }
+
+    public long getRetryBackoffMillis() {
+        return retryBackoffMillis;
+    }
+
+    /**
+     *
+     * @param retryBackoffMillis espera antes do primeiro reenvio; dobra a cada
+     * tentativa
+     */
+    public void setRetryBackoffMillis(long retryBackoffMillis) {
+        if (retryBackoffMillis < 0) {
+            throw new IllegalArgumentException("Retry backoff must not be negative.");
+        }
+        this.retryBackoffMillis = retryBackoffMillis;
+    }
+
+    public ImportListener getListener() {
+        return listener;
+    }
+
+    /**
+     *
+     * @param listener recebe o progresso após cada bloco, em ordem e sob o
+     * lock da importação; não deve bloquear por muito tempo
+     */
+    public void setListener(ImportListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * estado compartilhado pelos blocos de uma importação.
+     */
+    class Job {
+
+        private final FileChannel channel;
+        private final Class<?> clazz;
+        private final IndexInfo indexInfo;
+        private final String[] header;
+        private final long totalBytes;
+        private final TreeMap<Long, Long> completed = new TreeMap<>();
+        private long checkpoint;
+        private long documents;
+        private long failures;
+        private volatile Exception failure;
+
+        Job(FileChannel channel, Class<?> clazz, IndexInfo indexInfo, String[] header, long start, long totalBytes) {
+            this.channel = channel;
+            this.clazz = clazz;
+            this.indexInfo = indexInfo;
+            this.header = header;
+            this.checkpoint = start;
+            this.totalBytes = totalBytes;
+        }
+
+        /**
+         * registra a conclusão de um bloco. O checkpoint só avança sobre blocos
+         * cujos documentos foram todos indexados; o listener é chamado sob o
+         * lock da importação, então recebe o progresso em ordem.
+         */
+        synchronized void chunkDone(long start, long end, long chunkDocuments, long chunkFailures, boolean indexed) {
+            documents += chunkDocuments;
+            failures += chunkFailures;
+            if (indexed) {
+                completed.put(start, end);
+                Long next;
+                while ((next = completed.remove(checkpoint)) != null) {
+                    checkpoint = next;
+                }
+            }
+            if (listener != null) {
+                listener.onProgress(getProgress());
+            }
+        }
+
+        synchronized void fail(Exception ex) {
+            if (failure == null) {
+                failure = ex;
+            }
+        }
+
+        boolean isFailed() {
+            return failure != null;
+        }
+
+        Exception getFailure() {
+            return failure;
+        }
+
+        synchronized ImportProgress getProgress() {
+            return new ImportProgress(documents, failures, checkpoint, totalBytes);
+        }
+    }
+
+    /**
+     * lê as linhas de um bloco e as envia em requisições em massa de até
+     * bulkActions documentos, reenviando os itens rejeitados pelo cluster por
+     * sobrecarga.
+     */
+    private class ChunkTask implements Runnable {
+
+        private final Job job;
+        private final long start;
+        private final long end;
+        private final Semaphore inFlight;
+        private final Gson gson = GsonFactory.getGson();
+        private final JsonParser parser = new JsonParser();
+        private final Client client = indexManager.getElasticSearchClient();
+        private List<IndexRequestBuilder> batch = new ArrayList<>();
+        private long documents;
+        private long failures;
+        private long unindexed;
+
+        ChunkTask(Job job, long start, long end, Semaphore inFlight) {
+            this.job = job;
+            this.start = start;
+            this.end = end;
+            this.inFlight = inFlight;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (job.isFailed()) {
+                    return;
+                }
+                MappedByteBuffer buffer = job.channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                int limit = buffer.limit();
+                int lineStart = 0;
+                for (int i = 0; i <= limit; i++) {
+                    if (i < limit && buffer.get(i) != '\n') {
+                        continue;
+                    }
+                    int lineEnd = i;
+                    if (lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r') {
+                        lineEnd--;
+                    }
+                    if (lineEnd > lineStart) {
+                        byte[] line = new byte[lineEnd - lineStart];
+                        buffer.position(lineStart);
+                        buffer.get(line);
+                        add(line);
+                    }
+                    lineStart = i + 1;
+                }
+                flush();
+                job.chunkDone(start, end, documents, failures, unindexed == 0);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                job.fail(ex);
+            } catch (IOException | RuntimeException ex) {
+                logger.error(String.format("Chunk [%d, %d) failed.", start, end), ex);
+                job.fail(ex);
+            } finally {
+                inFlight.release();
+            }
+        }
+
+        private void add(byte[] line) throws InterruptedException {
+            String id = null;
+            byte[] source;
+            try {
+                if (raw) {
+                    if (idField != null) {
+                        id = getId(parser.parse(new String(line, StandardCharsets.UTF_8)));
+                    }
+                    source = line;
+                } else {
+                    JsonElement tree;
+                    if (job.header != null) {
+                        tree = toJson(parseCsvLine(new String(line, StandardCharsets.UTF_8)));
+                    } else {
+                        tree = parser.parse(new String(line, StandardCharsets.UTF_8));
+                    }
+                    id = getId(tree);
+                    source = gson.toJson(gson.fromJson(tree, job.clazz)).getBytes(StandardCharsets.UTF_8);
+                }
+            } catch (JsonParseException | NumberFormatException ex) {
+                logger.warn(String.format("Skipping unreadable line in chunk [%d, %d): %s", start, end, ex.getMessage()));
+                failures++;
+                return;
+            }
+            batch.add(client.prepareIndex(job.indexInfo.getName(), job.indexInfo.getType(), id).setSource(source));
+            if (batch.size() >= bulkActions) {
+                flush();
+            }
+        }
+
+        private JsonObject toJson(String[] values) {
+            JsonObject object = new JsonObject();
+            for (int i = 0; i < values.length && i < job.header.length; i++) {
+                if (!values[i].isEmpty()) {
+                    object.add(job.header[i], new JsonPrimitive(values[i]));
+                }
+            }
+            return object;
+        }
+
+        private String getId(JsonElement tree) {
+            if (idField == null || !tree.isJsonObject()) {
+                return null;
+            }
+            JsonElement id = tree.getAsJsonObject().get(idField);
+            if (id == null || id.isJsonNull()) {
+                return null;
+            }
+            if (!id.isJsonPrimitive()) {
+                throw new JsonParseException(String.format("Field %s is not a value.", idField));
+            }
+            return id.getAsString();
+        }
+
+        /**
+         * envia o lote; itens rejeitados por sobrecarga (503 no elasticsearch
+         * 1.x, EsRejectedExecutionException) são reenviados até maxRetries
+         * vezes, com espera dobrando a cada tentativa. Os demais itens com falha
+         * impedem que o checkpoint avance sobre este bloco.
+         */
+        private void flush() throws InterruptedException {
+            List<IndexRequestBuilder> pending = batch;
+            batch = new ArrayList<>();
+            for (int attempt = 0; !pending.isEmpty(); attempt++) {
+                BulkRequestBuilder bulk = client.prepareBulk();
+                for (IndexRequestBuilder request : pending) {
+                    bulk.add(request);
+                }
+                BulkResponse response = bulk.execute().actionGet();
+                List<IndexRequestBuilder> rejected = new ArrayList<>();
+                String failureMessage = null;
+                for (BulkItemResponse item : response.getItems()) {
+                    if (!item.isFailed()) {
+                        documents++;
+                    } else if (item.getFailure().getStatus() == RestStatus.SERVICE_UNAVAILABLE && attempt < maxRetries) {
+                        rejected.add(pending.get(item.getItemId()));
+                    } else {
+                        failures++;
+                        unindexed++;
+                        failureMessage = item.getFailureMessage();
+                    }
+                }
+                if (failureMessage != null) {
+                    logger.error(String.format("Documents in chunk [%d, %d) were not indexed: %s", start, end, failureMessage));
+                }
+                if (!rejected.isEmpty()) {
+                    logger.warn(String.format("%d documents rejected by the cluster, retrying...", rejected.size()));
+                    Thread.sleep(retryBackoffMillis << attempt);
+                }
+                pending = rejected;
+            }
+        }
+    }
+
+}
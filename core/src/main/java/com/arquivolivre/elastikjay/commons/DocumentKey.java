@@ -0,0 +1,46 @@
+package com.arquivolivre.elastikjay.commons;
+
+import java.util.Objects;
+
+/**
+ * Identifica um documento no cluster pela tripla (indice, tipo, id).
+ *
+ * @author Thiago da Silva Gonzaga <thiagosg@sjrp.unesp.br>
+ */
+final class DocumentKey {
+
+    private final String index;
+    private final String type;
+    private final String id;
+
+    DocumentKey(String index, String type, String id) {
+        this.index = index;
+        this.type = type;
+        this.id = id;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof DocumentKey)) {
+            return false;
+        }
+        DocumentKey other = (DocumentKey) obj;
+        return Objects.equals(index, other.index)
+                && Objects.equals(type, other.type)
+                && Objects.equals(id, other.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(index, type, id);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s/%s/%s", index, type, id);
+    }
+
+}
@@ -0,0 +1,202 @@
+package com.arquivolivre.elastikjay.commons;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Currency;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Instância compartilhada do Gson usada para ler e gravar documentos. Datas e
+ * calendários são gravados em ISO-8601 (UTC), formato aceito pelo
+ * dateOptionalTime que o mapeamento gerado usa para campos do tipo date; o
+ * Gson padrão grava datas no formato do locale e calendários como objetos.
+ * Moedas são gravadas pelo código ISO 4217.
+ *
+ * <p>
+ * Documentos gravados antes, com o Gson padrão, continuam legíveis: datas que
+ * não estão em ISO-8601 são lidas no formato "Jan 1, 2014 12:00:00 AM" (fuso
+ * da JVM) ou pelo adaptador padrão do Gson, e calendários gravados como
+ * objetos são lidos pelo adaptador padrão.</p>
+ *
+ * @author Thiago da Silva Gonzaga <thiagosg@sjrp.unesp.br>
+ */
+public class GsonFactory {
+
+    private static final String DATE_FORMAT = "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'";
+    private static final String[] PARSE_FORMATS = {
+        "yyyy-MM-dd'T'HH:mm:ss.SSSXXX",
+        "yyyy-MM-dd'T'HH:mm:ssXXX",
+        "yyyy-MM-dd'T'HH:mm:ss.SSS",
+        "yyyy-MM-dd'T'HH:mm:ss",
+        "yyyy-MM-dd"
+    };
+    private static final String LEGACY_FORMAT = "MMM d, yyyy h:mm:ss a";
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+    private static final ThreadLocal<SimpleDateFormat> dateFormat = new ThreadLocal<SimpleDateFormat>() {
+        @Override
+        protected SimpleDateFormat initialValue() {
+            SimpleDateFormat format = new SimpleDateFormat(DATE_FORMAT);
+            format.setTimeZone(UTC);
+            return format;
+        }
+    };
+    private static final ThreadLocal<SimpleDateFormat[]> parseFormats = new ThreadLocal<SimpleDateFormat[]>() {
+        @Override
+        protected SimpleDateFormat[] initialValue() {
+            SimpleDateFormat[] formats = new SimpleDateFormat[PARSE_FORMATS.length + 1];
+            for (int i = 0; i < PARSE_FORMATS.length; i++) {
+                formats[i] = new SimpleDateFormat(PARSE_FORMATS[i]);
+                formats[i].setTimeZone(UTC);
+                formats[i].setLenient(false);
+            }
+            formats[PARSE_FORMATS.length] = new SimpleDateFormat(LEGACY_FORMAT, Locale.US);
+            return formats;
+        }
+    };
+    private static final Gson gson = new GsonBuilder()
+            .registerTypeAdapterFactory(new DateTypeAdapterFactory())
+            .registerTypeAdapter(Currency.class, new CurrencyTypeAdapter().nullSafe())
+            .create();
+
+    private GsonFactory() {
+    }
+
+    public static Gson getGson() {
+        return gson;
+    }
+
+    static String formatDate(long millis) {
+        return dateFormat.get().format(new Date(millis));
+    }
+
+    static long parseDate(String value) {
+        Date date = tryParseDate(value);
+        if (date == null) {
+            throw new JsonSyntaxException(String.format("Unparseable date: %s", value));
+        }
+        return date.getTime();
+    }
+
+    /**
+     * tenta os formatos ISO-8601 e o formato legado do Gson padrão.
+     *
+     * @return a data ou null caso nenhum formato reconheça o valor
+     */
+    private static Date tryParseDate(String value) {
+        for (SimpleDateFormat format : parseFormats.get()) {
+            ParsePosition position = new ParsePosition(0);
+            Date date = format.parse(value, position);
+            if (date != null && position.getIndex() == value.length()) {
+                return date;
+            }
+        }
+        return null;
+    }
+
+    private static class DateTypeAdapterFactory implements TypeAdapterFactory {
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> typeToken) {
+            Class<? super T> rawType = typeToken.getRawType();
+            if (Date.class.isAssignableFrom(rawType)
+                    || (Calendar.class.isAssignableFrom(rawType) && rawType.isAssignableFrom(GregorianCalendar.class))) {
+                return (TypeAdapter<T>) new DateTypeAdapter(rawType, gson.getDelegateAdapter(this, typeToken));
+            }
+            return null;
+        }
+    }
+
+    private static class CurrencyTypeAdapter extends TypeAdapter<Currency> {
+
+        @Override
+        public void write(JsonWriter out, Currency value) throws IOException {
+            out.value(value.getCurrencyCode());
+        }
+
+        @Override
+        public Currency read(JsonReader in) throws IOException {
+            return Currency.getInstance(in.nextString());
+        }
+    }
+
+    /**
+     * lê e grava {@link Date}, suas subclasses com construtor (long), como
+     * java.sql.Timestamp, e {@link Calendar}. Valores que não estão em
+     * nenhum dos formatos conhecidos são lidos pelo adaptador padrão do Gson.
+     */
+    private static class DateTypeAdapter extends TypeAdapter<Object> {
+
+        private final Class<?> rawType;
+        private final TypeAdapter<?> legacy;
+
+        DateTypeAdapter(Class<?> rawType, TypeAdapter<?> legacy) {
+            this.rawType = rawType;
+            this.legacy = legacy;
+        }
+
+        @Override
+        public void write(JsonWriter out, Object value) throws IOException {
+            if (value == null) {
+                out.nullValue();
+                return;
+            }
+            long millis = value instanceof Calendar ? ((Calendar) value).getTimeInMillis() : ((Date) value).getTime();
+            out.value(formatDate(millis));
+        }
+
+        @Override
+        public Object read(JsonReader in) throws IOException {
+            JsonToken token = in.peek();
+            if (token == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            if (token == JsonToken.BEGIN_OBJECT) {
+                return legacy.read(in);
+            }
+            long millis;
+            if (token == JsonToken.NUMBER) {
+                millis = in.nextLong();
+            } else {
+                String value = in.nextString();
+                Date date = tryParseDate(value);
+                if (date == null) {
+                    return legacy.fromJsonTree(new JsonPrimitive(value));
+                }
+                millis = date.getTime();
+            }
+            if (Calendar.class.isAssignableFrom(rawType)) {
+                Calendar calendar = new GregorianCalendar(UTC);
+                calendar.setTimeInMillis(millis);
+                return calendar;
+            }
+            if (rawType == Date.class) {
+                return new Date(millis);
+            }
+            try {
+                return rawType.getConstructor(long.class).newInstance(millis);
+            } catch (NoSuchMethodException | InstantiationException | IllegalAccessException | InvocationTargetException ex) {
+                throw new JsonParseException(String.format("Unable to create %s", rawType.getName()), ex);
+            }
+        }
+    }
+
+}
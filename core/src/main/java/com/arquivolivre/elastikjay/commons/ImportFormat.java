@@ -0,0 +1,24 @@
+package com.arquivolivre.elastikjay.commons;
+
+/**
+ * Formatos de arquivo aceitos pelo {@link BulkImporter}.
+ *
+ * @author Thiago da Silva Gonzaga <thiagosg@sjrp.unesp.br>
+ */
+public enum ImportFormat {
+
+    /**
+     * um documento JSON por linha.
+     */
+    NDJSON,
+    /**
+     * valores separados por vírgula, com os nomes dos campos na primeira
+     * linha.
+     */
+    CSV;
+
+    @Override
+    public String toString() {
+        return this.name().toLowerCase();
+    }
+}
@@ -0,0 +1,16 @@
+package com.arquivolivre.elastikjay.commons;
+
+/**
+ * Recebe o progresso de uma importação a cada bloco concluído.
+ *
+ * @author Thiago da Silva Gonzaga <thiagosg@sjrp.unesp.br>
+ */
+public interface ImportListener {
+
+    /**
+     *
+     * @param progress estado da importação após a conclusão de um bloco
+     */
+    void onProgress(ImportProgress progress);
+
+}
@@ -0,0 +1,53 @@
+package com.arquivolivre.elastikjay.commons;
+
+/**
+ * Estado de uma importação em andamento.
+ *
+ * @author Thiago da Silva Gonzaga <thiagosg@sjrp.unesp.br>
+ */
+public class ImportProgress {
+
+    private final long documents;
+    private final long failures;
+    private final long checkpoint;
+    private final long totalBytes;
+
+    public ImportProgress(long documents, long failures, long checkpoint, long totalBytes) {
+        this.documents = documents;
+        this.failures = failures;
+        this.checkpoint = checkpoint;
+        this.totalBytes = totalBytes;
+    }
+
+    /**
+     *
+     * @return número de documentos enviados ao indice
+     */
+    public long getDocuments() {
+        return documents;
+    }
+
+    /**
+     *
+     * @return número de linhas que não puderam ser lidas ou indexadas
+     */
+    public long getFailures() {
+        return failures;
+    }
+
+    /**
+     * posição no arquivo até a qual todos os blocos foram concluídos. Pode ser
+     * passada a {@link BulkImporter#importFile(java.io.File, Class, long)}
+     * para retomar a importação.
+     *
+     * @return posição em bytes
+     */
+    public long getCheckpoint() {
+        return checkpoint;
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+}
@@ -26,6 +26,57 @@ public interface IndexManager {
      */
     void executeBulkAdd();
 
+    /**
+     * serializa o objeto e o adiciona à fila de ingestão limitada. Caso a fila
+     * esteja cheia, aplica a {@link BackpressurePolicy} configurada. A fila só
+     * é esvaziada por {@link #executeQueuedBulk()}; com as políticas BLOCK e
+     * TIMEOUT ele deve ser chamado por outra thread, pois um produtor que
+     * também consome a fila esperaria por si mesmo.
+     *
+     * @param id id unico no indice
+     * @param source dado a ser inserido no indice
+     * @return true caso o objeto tenha sido enfileirado, false caso tenha sido
+     * rejeitado
+     */
+    boolean enqueue(String id, Object source);
+
+    /**
+     * remove os documentos da fila de ingestão e os envia em uma requisição em
+     * massa.
+     *
+     * @return número de documentos enviados
+     */
+    int executeQueuedBulk();
+
+    /**
+     * define a fila de ingestão usada por {@link #enqueue(String, Object)}.
+     *
+     * @param queue fila de ingestão
+     */
+    void setIngestQueue(IngestQueue queue);
+
+    IngestQueue getIngestQueue();
+
+    /**
+     * ativa o modo de coalescência: escritas repetidas para o mesmo (indice,
+     * tipo, id) dentro de um lote pendente são reduzidas à última, que é a
+     * única enviada ao executar o lote, na posição em que foi feita. A ordem
+     * entre as demais escritas, com ou sem id, é preservada. Ao desativar, as
+     * escritas já coalescidas são movidas para o lote antes das próximas.
+     *
+     * @param coalescing true para ativar, false para desativar
+     */
+    void setCoalescing(boolean coalescing);
+
+    boolean isCoalescing();
+
+    /**
+     *
+     * @return número de escritas descartadas por terem sido sobrescritas no
+     * mesmo lote
+     */
+    long getCoalescedCount();
+
     /**
      * Recupera um objeto do indice a partir do id
      *
@@ -36,6 +87,32 @@ public interface IndexManager {
      */
     <A> A get(String id, Class<A> clazz);
 
+    /**
+     * inicia uma consulta ao indice da classe.
+     *
+     * @param <A> tipo da classe que será retornada
+     * @param clazz classe anotada com {@code @Index}
+     * @return consulta a ser configurada e executada
+     */
+    <A> TypedSearch<A> search(Class<A> clazz);
+
+    /**
+     * recupera o nome e o tipo do indice a partir da anotação {@code @Index}
+     * da classe.
+     *
+     * @param clazz classe anotada com {@code @Index}
+     * @return informações do indice
+     */
+    IndexInfo getIndexInfo(Class<?> clazz);
+
+    /**
+     * cria o indice da classe, com suas configurações e mapa, caso ainda não
+     * exista.
+     *
+     * @param clazz classe anotada com {@code @Index}
+     */
+    void ensureIndex(Class<?> clazz);
+
     /**
      * insere o mapa no devido indice.
      *
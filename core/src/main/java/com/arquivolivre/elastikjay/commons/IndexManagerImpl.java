@@ -1,25 +1,20 @@
 package com.arquivolivre.elastikjay.commons;
 
-import com.arquivolivre.elastikyjay.annotations.Analyzer;
-import com.arquivolivre.elastikyjay.annotations.Ignored;
+import com.arquivolivre.elastikyjay.annotations.DisableAll;
 import com.arquivolivre.elastikyjay.annotations.Index;
-import com.arquivolivre.elastikyjay.annotations.Nested;
-import com.arquivolivre.elastikyjay.annotations.NotAnalyzed;
-import com.arquivolivre.elastikyjay.annotations.NotIndexed;
-import static com.arquivolivre.elastikjay.commons.Types.isBasicType;
-import static com.arquivolivre.elastikjay.commons.Types.isGeneric;
-import com.google.gson.Gson;
+import com.arquivolivre.elastikyjay.annotations.Source;
 import java.lang.annotation.Annotation;
-import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
-import java.lang.reflect.ParameterizedType;
-import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import org.apache.log4j.Logger;
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.action.admin.indices.create.CreateIndexRequest;
@@ -31,6 +26,8 @@ import org.elasticsearch.action.admin.indices.exists.indices.IndicesExistsRespon
 import org.elasticsearch.action.bulk.BulkRequestBuilder;
 import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.index.IndexRequestBuilder;
 import org.elasticsearch.client.Client;
 import static org.elasticsearch.common.settings.ImmutableSettings.settingsBuilder;
 import org.elasticsearch.common.settings.Settings;
@@ -43,7 +40,13 @@ public class IndexManagerImpl implements IndexManager {
     
     private final Client elasticSearchClient;
     private BulkRequestBuilder bulkRequest;
+    private final PendingWrites<IndexRequestBuilder> pendingWrites = new PendingWrites<>();
+    private IngestQueue ingestQueue = new IngestQueue();
+    private final Set<String> knownIndices = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private boolean coalescing;
+    private final AtomicLong coalescedWrites = new AtomicLong();
     private final Logger logger = Logger.getLogger(IndexManagerImpl.class);
+    private static final MappingResolver mappingResolver = new MappingResolver();
     
     IndexManagerImpl(Client client) {
         this.elasticSearchClient = client;
@@ -64,13 +67,11 @@ public class IndexManagerImpl implements IndexManager {
             bulkRequest = elasticSearchClient.prepareBulk();
         }
         if (source != null) {
-            String json = new Gson().toJson(source);
+            String json = GsonFactory.getGson().toJson(source);
             if (!json.isEmpty()) {
                 IndexInfo indexInfo = getIndexInfo(source.getClass());
-                if (!indexExists(indexInfo.getName())) {
-                    createIndex(indexInfo.getName(), indexInfo.getType(), source);
-                }
-                bulkRequest.add(elasticSearchClient.prepareIndex(indexInfo.getName(), indexInfo.getType(), id).setSource(json));
+                ensureIndex(indexInfo, source.getClass());
+                addWrite(bulkRequest, pendingWrites, elasticSearchClient.prepareIndex(indexInfo.getName(), indexInfo.getType(), id).setSource(json));
                 logger.info(String.format("Object (id: %s) added to bulk", id));
             }
         } else {
@@ -81,6 +82,7 @@ public class IndexManagerImpl implements IndexManager {
     @Override
     public void executeBulkAdd() {
         if (bulkRequest != null) {
+            flushWrites(bulkRequest, pendingWrites);
             logger.info("Executing bulk add...");
             BulkResponse actionGet = bulkRequest.execute().actionGet();
             if (actionGet.hasFailures()) {
@@ -92,6 +94,127 @@ public class IndexManagerImpl implements IndexManager {
         }
     }
     
+    @Override
+    public boolean enqueue(String id, Object source) {
+        if (source == null) {
+            logger.warn("Attempting to enqueue an empty object, ignoring...");
+            return false;
+        }
+        String json = GsonFactory.getGson().toJson(source);
+        if (json.isEmpty()) {
+            return false;
+        }
+        IndexInfo indexInfo = getIndexInfo(source.getClass());
+        ensureIndex(indexInfo, source.getClass());
+        IngestQueue.Entry entry = new IngestQueue.Entry(indexInfo.getName(), indexInfo.getType(), id, json.getBytes(StandardCharsets.UTF_8));
+        try {
+            if (ingestQueue.offer(entry)) {
+                return true;
+            }
+            logger.warn(String.format("Object (id: %s) rejected by the ingest queue (policy: %s, depth: %d)", id, ingestQueue.getPolicy(), ingestQueue.getDepth()));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            logger.warn(String.format("Interrupted while enqueuing object (id: %s)", id), ex);
+        }
+        return false;
+    }
+    
+    @Override
+    public int executeQueuedBulk() {
+        List<IngestQueue.Entry> entries = ingestQueue.drain(ingestQueue.getMaxDocuments());
+        if (entries.isEmpty()) {
+            return 0;
+        }
+        BulkRequestBuilder queuedRequest = elasticSearchClient.prepareBulk();
+        PendingWrites<IndexRequestBuilder> queuedWrites = new PendingWrites<>();
+        for (IngestQueue.Entry entry : entries) {
+            addWrite(queuedRequest, queuedWrites, elasticSearchClient.prepareIndex(entry.getIndex(), entry.getType(), entry.getId()).setSource(entry.getSource()));
+        }
+        flushWrites(queuedRequest, queuedWrites);
+        logger.info(String.format("Executing queued bulk add of %d objects...", queuedRequest.numberOfActions()));
+        BulkResponse actionGet = queuedRequest.execute().actionGet();
+        if (actionGet.hasFailures()) {
+            logger.error(actionGet.buildFailureMessage());
+        } else {
+            logger.info("Done!");
+        }
+        return queuedRequest.numberOfActions();
+    }
+    
+    @Override
+    public void setIngestQueue(IngestQueue queue) {
+        this.ingestQueue = queue;
+    }
+    
+    @Override
+    public IngestQueue getIngestQueue() {
+        return ingestQueue;
+    }
+    
+    @Override
+    public void setCoalescing(boolean coalescing) {
+        if (!coalescing && bulkRequest != null) {
+            flushWrites(bulkRequest, pendingWrites);
+        }
+        this.coalescing = coalescing;
+    }
+    
+    @Override
+    public boolean isCoalescing() {
+        return coalescing;
+    }
+    
+    @Override
+    public long getCoalescedCount() {
+        return coalescedWrites.get();
+    }
+    
+    /**
+     * adiciona a escrita à requisição em massa ou, no modo de coalescência, ao
+     * lote pendente, que mantém apenas a última escrita de cada (indice, tipo,
+     * id) na posição em que ela foi feita.
+     */
+    private void addWrite(BulkRequestBuilder request, PendingWrites<IndexRequestBuilder> pending, IndexRequestBuilder write) {
+        if (!coalescing) {
+            request.add(write);
+            return;
+        }
+        IndexRequest indexRequest = write.request();
+        DocumentKey key = null;
+        if (indexRequest.id() != null) {
+            key = new DocumentKey(indexRequest.index(), indexRequest.type(), indexRequest.id());
+        }
+        if (pending.add(key, write)) {
+            coalescedWrites.incrementAndGet();
+        }
+    }
+    
+    private void flushWrites(BulkRequestBuilder request, PendingWrites<IndexRequestBuilder> pending) {
+        for (IndexRequestBuilder write : pending.drain()) {
+            request.add(write);
+        }
+    }
+    
+    @Override
+    public void ensureIndex(Class<?> clazz) {
+        ensureIndex(getIndexInfo(clazz), clazz);
+    }
+    
+    /**
+     * os indices que já existem são lembrados para que enqueue e addToBulk
+     * não consultem o cluster a cada documento.
+     */
+    private void ensureIndex(IndexInfo indexInfo, Class<?> clazz) {
+        if (knownIndices.contains(indexInfo.getName())) {
+            return;
+        }
+        if (indexExists(indexInfo.getName())) {
+            knownIndices.add(indexInfo.getName());
+        } else {
+            createIndex(indexInfo.getName(), indexInfo.getType(), clazz);
+        }
+    }
+    
     @Override
     public <A> A get(String id, Class<A> clazz) {
         IndexInfo indexInfo = getIndexInfo(clazz);
@@ -101,10 +224,16 @@ public class IndexManagerImpl implements IndexManager {
             logger.warn(msg);
             return null;
         }
-        return new Gson().fromJson(response.getSourceAsString(), clazz);
+        return GsonFactory.getGson().fromJson(response.getSourceAsString(), clazz);
     }
     
-    private IndexInfo getIndexInfo(Class clazz) {
+    @Override
+    public <A> TypedSearch<A> search(Class<A> clazz) {
+        return new TypedSearch<>(elasticSearchClient, getIndexInfo(clazz), clazz);
+    }
+    
+    @Override
+    public IndexInfo getIndexInfo(Class<?> clazz) {
         try {
             Annotation annotation = clazz.getAnnotation(Index.class);
             String index = (String) annotation.annotationType().getMethod("name").invoke(annotation);
@@ -135,21 +264,26 @@ public class IndexManagerImpl implements IndexManager {
     
     @Override
     public void createIndex(String indexName, String indexType, Object source) {
+        createIndex(indexName, indexType, source.getClass());
+    }
+    
+    private void createIndex(String indexName, String indexType, Class<?> clazz) {
         logger.info(String.format("Generating index %s ...", indexName));
         CreateIndexRequest createIndexRequest = new CreateIndexRequest(indexName);
         if (indexType != null) {
-            String settings = generateSettings(source);
+            String settings = generateSettings(clazz);
             if (settings != null) {
                 logger.info("Setting up...");
                 createIndexRequest.settings(settings);
             }
         }
         logger.info("Mapping...");
-        String mapping = generateMapping(source);
+        String mapping = generateMapping(clazz);
         createIndexRequest.mapping(indexType, mapping);
         try {
             CreateIndexResponse response = elasticSearchClient.admin().indices().create(createIndexRequest).actionGet();
             if (response.isAcknowledged()) {
+                knownIndices.add(indexName);
                 logger.info(String.format("Index %s created!", indexName));
             }
         } catch (ElasticsearchException ex) {
@@ -160,6 +294,7 @@ public class IndexManagerImpl implements IndexManager {
     @Override
     public DeleteIndexResponse deleteIndices(String... indices) {
         DeleteIndexRequest request = new DeleteIndexRequest(indices);
+        knownIndices.removeAll(Arrays.asList(indices));
         return elasticSearchClient.admin().indices().delete(request).actionGet();
     }
     
@@ -169,82 +304,46 @@ public class IndexManagerImpl implements IndexManager {
     }
     
     public String generateMapping(Object obj) {
+        return generateMapping(obj.getClass());
+    }
+    
+    public String generateMapping(Class<?> clazz) {
         Map<Object, Object> typeMap = new TreeMap<>();
         Map<Object, Object> properties = new TreeMap<>();
-        IndexInfo indexInfo = getIndexInfo(obj.getClass());
+        IndexInfo indexInfo = getIndexInfo(clazz);
         typeMap.put(indexInfo.getType(), properties);
+        putTypeOptions(clazz, properties);
         try {
-            properties.put("properties", getFields(obj.getClass(), false));
-        } catch (SecurityException | IllegalArgumentException | IllegalAccessException ex) {
+            properties.put("properties", mappingResolver.getProperties(clazz));
+        } catch (SecurityException ex) {
             logger.error("Error while parsing mapping.", ex);
             return null;
         }
-        return new Gson().toJson(typeMap);
+        return GsonFactory.getGson().toJson(typeMap);
     }
     
-    private Map getFields(Class clazz, boolean avoidLoop) throws SecurityException, IllegalArgumentException, IllegalAccessException {
-        Field[] declaredFields = clazz.getDeclaredFields();
-        Map<Object, Object> fields = new TreeMap<>();
-        for (Field field : declaredFields) {
-            if (Modifier.isStatic(field.getModifiers()) || field.isAnnotationPresent(Ignored.class)) {
-                continue;
-            }
-            Map<Object, Object> info = new TreeMap<>();
-            if (isGeneric(field.getGenericType())) {
-                Class clazzType = getInnerType(field);
-                if (clazzType == clazz && !avoidLoop) {
-                    info.put("properties", getFields(clazzType, true));
-                } else if (isBasicType(clazzType.getSimpleName().toLowerCase())) {
-                    info.put("type", clazzType.getSimpleName().toLowerCase());
-                } else if (!avoidLoop) {
-                    info.put("properties", getFields(clazzType, false));
-                }
-            } else if (isBasicType(field.getType().getSimpleName().toLowerCase())) {
-                info.put("type", field.getType().getSimpleName().toLowerCase());
-            } else {
-                Class aClass = field.getType().getClass();
-                if (aClass == clazz && !avoidLoop) {
-                    info.put("properties", getFields(aClass, true));
-                } else if (!avoidLoop) {
-                    info.put("properties", getFields(aClass, false));
-                }
-            }
-            if (field.isAnnotationPresent(NotAnalyzed.class)) {
-                info.put("index", "not_analyzed");
-            } else if (field.isAnnotationPresent(NotIndexed.class)) {
-                info.put("index", "no");
-            } else if (field.isAnnotationPresent(Nested.class)) {
-                info.put("type", "nested");
+    private void putTypeOptions(Class<?> clazz, Map<Object, Object> typeMapping) {
+        if (clazz.isAnnotationPresent(DisableAll.class)) {
+            Map<String, Object> all = new TreeMap<>();
+            all.put("enabled", false);
+            typeMapping.put("_all", all);
+        }
+        Source source = clazz.getAnnotation(Source.class);
+        if (source != null) {
+            Map<String, Object> sourceMapping = new TreeMap<>();
+            if (!source.enabled()) {
+                sourceMapping.put("enabled", false);
             }
-            
-            if (field.isAnnotationPresent(Analyzer.class)) {
-                try {
-                    Analyzer annotation = field.getAnnotation(Analyzer.class);
-                    String analyzer = (String) annotation.annotationType().getMethod("value").invoke(annotation);
-                    info.put("analyzer", analyzer);
-                } catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException | NoSuchMethodException | SecurityException ex) {
-                    logger.error(ex);
-                }
+            if (!isEmpty(source.includes())) {
+                sourceMapping.put("includes", source.includes());
             }
-            if (!info.isEmpty()) {
-                fields.put(field.getName(), info);
+            if (!isEmpty(source.excludes())) {
+                sourceMapping.put("excludes", source.excludes());
             }
-            
-        }
-        return fields;
-    }
-    
-    private Class getInnerType(Field field) {
-        Class<?> fieldArgClass = null;
-        Type genericType = field.getGenericType();
-        if (isGeneric(genericType)) {
-            ParameterizedType genericFieldType = (ParameterizedType) genericType;
-            Type[] fieldArgTypes = genericFieldType.getActualTypeArguments();
-            for (Type fieldArgType : fieldArgTypes) {
-                fieldArgClass = (Class<?>) fieldArgType;
+            if (!sourceMapping.isEmpty()) {
+                typeMapping.put("_source", sourceMapping);
             }
         }
-        return fieldArgClass;
     }
     
     @Override
@@ -266,7 +365,11 @@ public class IndexManagerImpl implements IndexManager {
     }
     
     public String generateSettings(Object obj) {
-        Index annotation = obj.getClass().getAnnotation(Index.class);
+        return generateSettings(obj.getClass());
+    }
+    
+    public String generateSettings(Class<?> clazz) {
+        Index annotation = clazz.getAnnotation(Index.class);
         Class<? extends Annotation> annotationType = annotation.annotationType();
         List<String> ignored = Arrays.asList("name", "type");
         Map<String, Object> result = null;
@@ -288,7 +391,7 @@ public class IndexManagerImpl implements IndexManager {
                 result.put(m.getName(), resultMap);
             }
         }
-        return new Gson().toJson(result);
+        return GsonFactory.getGson().toJson(result);
     }
     
     private Object generateMap(Object annotation) throws IllegalAccessException, IllegalArgumentException, InvocationTargetException {
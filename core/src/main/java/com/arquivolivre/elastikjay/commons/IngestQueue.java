@@ -0,0 +1,258 @@
+package com.arquivolivre.elastikjay.commons;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fila limitada de documentos já serializados aguardando envio em massa. O
+ * limite é medido tanto em número de documentos quanto em bytes, e o
+ * comportamento quando a fila está cheia é definido por
+ * {@link BackpressurePolicy}.
+ *
+ * @author Thiago da Silva Gonzaga <thiagosg@sjrp.unesp.br>
+ */
+public class IngestQueue {
+
+    public static final int DEFAULT_MAX_DOCUMENTS = 10000;
+    public static final long DEFAULT_MAX_BYTES = 16 * 1024 * 1024;
+
+    private final int maxDocuments;
+    private final long maxBytes;
+    private final BackpressurePolicy policy;
+    private final long timeoutMillis;
+
+    private final Deque<Entry> entries = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private long sizeInBytes;
+
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+
+    public IngestQueue() {
+        this(DEFAULT_MAX_DOCUMENTS, DEFAULT_MAX_BYTES, BackpressurePolicy.REJECT, 0);
+    }
+
+    /**
+     *
+     * @param maxDocuments número máximo de documentos na fila
+     * @param maxBytes tamanho máximo, em bytes, dos documentos na fila
+     * @param policy comportamento quando a fila está cheia
+     * @param timeoutMillis tempo máximo de espera, usado apenas por
+     * {@link BackpressurePolicy#TIMEOUT}
+     */
+    public IngestQueue(int maxDocuments, long maxBytes, BackpressurePolicy policy, long timeoutMillis) {
+        if (maxDocuments <= 0 || maxBytes <= 0) {
+            throw new IllegalArgumentException("Queue limits must be positive.");
+        }
+        if (policy == null) {
+            throw new IllegalArgumentException("A backpressure policy is required.");
+        }
+        if (timeoutMillis < 0) {
+            throw new IllegalArgumentException("Timeout must not be negative.");
+        }
+        this.maxDocuments = maxDocuments;
+        this.maxBytes = maxBytes;
+        this.policy = policy;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * adiciona um documento à fila aplicando a política configurada caso a
+     * fila esteja cheia.
+     *
+     * @param entry documento serializado
+     * @return true caso o documento tenha sido enfileirado, false caso tenha
+     * sido rejeitado ou o tempo limite tenha expirado
+     * @throws InterruptedException caso a thread seja interrompida enquanto
+     * aguarda espaço na fila
+     */
+    public boolean offer(Entry entry) throws InterruptedException {
+        if (entry.size() > maxBytes) {
+            rejected.incrementAndGet();
+            return false;
+        }
+        lock.lockInterruptibly();
+        try {
+            if (!hasRoomFor(entry)) {
+                switch (policy) {
+                    case REJECT:
+                        rejected.incrementAndGet();
+                        return false;
+                    case DROP_OLDEST:
+                        while (!hasRoomFor(entry)) {
+                            Entry oldest = entries.pollFirst();
+                            sizeInBytes -= oldest.size();
+                            dropped.incrementAndGet();
+                        }
+                        break;
+                    case BLOCK:
+                        long start = System.nanoTime();
+                        try {
+                            while (!hasRoomFor(entry)) {
+                                notFull.await();
+                            }
+                        } finally {
+                            waitNanos.addAndGet(System.nanoTime() - start);
+                        }
+                        break;
+                    case TIMEOUT:
+                        long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+                        long waitStart = System.nanoTime();
+                        try {
+                            while (!hasRoomFor(entry)) {
+                                if (remaining <= 0) {
+                                    timedOut.incrementAndGet();
+                                    return false;
+                                }
+                                remaining = notFull.awaitNanos(remaining);
+                            }
+                        } finally {
+                            waitNanos.addAndGet(System.nanoTime() - waitStart);
+                        }
+                        break;
+                }
+            }
+            entries.addLast(entry);
+            sizeInBytes += entry.size();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * remove até maxEntries documentos do início da fila.
+     *
+     * @param maxEntries número máximo de documentos a remover
+     * @return documentos removidos, na ordem de chegada
+     */
+    public List<Entry> drain(int maxEntries) {
+        lock.lock();
+        try {
+            int count = Math.min(maxEntries, entries.size());
+            List<Entry> result = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Entry entry = entries.pollFirst();
+                sizeInBytes -= entry.size();
+                result.add(entry);
+            }
+            if (count > 0) {
+                notFull.signalAll();
+            }
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean hasRoomFor(Entry entry) {
+        return entries.size() < maxDocuments && sizeInBytes + entry.size() <= maxBytes;
+    }
+
+    /**
+     *
+     * @return número de documentos aguardando na fila
+     */
+    public int getDepth() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     *
+     * @return tamanho, em bytes, dos documentos aguardando na fila
+     */
+    public long getSizeInBytes() {
+        lock.lock();
+        try {
+            return sizeInBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     *
+     * @return tempo total, em milissegundos, que os produtores aguardaram por
+     * espaço na fila
+     */
+    public long getTotalWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(waitNanos.get());
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    public long getTimedOutCount() {
+        return timedOut.get();
+    }
+
+    public int getMaxDocuments() {
+        return maxDocuments;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public BackpressurePolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Documento serializado pronto para ser enviado ao indice.
+     */
+    public static class Entry {
+
+        private final String index;
+        private final String type;
+        private final String id;
+        private final byte[] source;
+
+        public Entry(String index, String type, String id, byte[] source) {
+            this.index = index;
+            this.type = type;
+            this.id = id;
+            this.source = source;
+        }
+
+        public String getIndex() {
+            return index;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public byte[] getSource() {
+            return source;
+        }
+
+        public int size() {
+            return source.length;
+        }
+    }
+
+}
@@ -0,0 +1,236 @@
+package com.arquivolivre.elastikjay.commons;
+
+import com.arquivolivre.elastikyjay.annotations.Analyzer;
+import com.arquivolivre.elastikyjay.annotations.DocValues;
+import com.arquivolivre.elastikyjay.annotations.Ignored;
+import com.arquivolivre.elastikyjay.annotations.IncludeInAll;
+import com.arquivolivre.elastikyjay.annotations.IndexOptions;
+import com.arquivolivre.elastikyjay.annotations.Nested;
+import com.arquivolivre.elastikyjay.annotations.Norms;
+import com.arquivolivre.elastikyjay.annotations.NormsLoading;
+import com.arquivolivre.elastikyjay.annotations.NotAnalyzed;
+import com.arquivolivre.elastikyjay.annotations.NotIndexed;
+import static com.arquivolivre.elastikjay.commons.Types.typeOf;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Resolve o mapeamento dos campos de uma classe, descendo por arrays,
+ * coleções e genéricos aninhados até o tipo do elemento. Os fragmentos de
+ * mapeamento de cada campo são mantidos em cache, exceto quando foram
+ * truncados por um ciclo, pois nesse caso dependem do caminho percorrido.
+ *
+ * @author Thiago da Silva Gonzaga <thiagosg@sjrp.unesp.br>
+ */
+public class MappingResolver {
+
+    private final ConcurrentMap<Class<?>, List<Field>> fieldsCache = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Field, Map<Object, Object>> fragmentsCache = new ConcurrentHashMap<>();
+
+    /**
+     * gera o mapa de propriedades da classe.
+     *
+     * @param clazz classe a ser mapeada
+     * @return mapa do nome do campo para seu mapeamento
+     */
+    public Map<Object, Object> getProperties(Class<?> clazz) {
+        return getProperties(clazz, new Resolution());
+    }
+
+    private Map<Object, Object> getProperties(Class<?> clazz, Resolution resolution) {
+        Map<Object, Object> fields = new TreeMap<>();
+        resolution.path.add(clazz);
+        try {
+            for (Field field : getMappableFields(clazz)) {
+                Map<Object, Object> info = getFragment(field, resolution);
+                if (!info.isEmpty()) {
+                    fields.put(field.getName(), info);
+                }
+            }
+        } finally {
+            resolution.path.remove(clazz);
+        }
+        return fields;
+    }
+
+    private Map<Object, Object> getFragment(Field field, Resolution resolution) {
+        Map<Object, Object> cached = fragmentsCache.get(field);
+        if (cached != null) {
+            return cached;
+        }
+        int cycles = resolution.cycles;
+        Map<Object, Object> info = Collections.unmodifiableMap(resolveFragment(field, resolution));
+        if (resolution.cycles == cycles) {
+            fragmentsCache.putIfAbsent(field, info);
+        }
+        return info;
+    }
+
+    private Map<Object, Object> resolveFragment(Field field, Resolution resolution) {
+        Map<Object, Object> info = new TreeMap<>();
+        Type elementType = getElementType(field.getGenericType());
+        Class<?> elementClass = getRawClass(elementType);
+        String type = typeOf(elementClass);
+        if (type != null) {
+            info.put("type", type);
+        } else if (Map.class.isAssignableFrom(elementClass)) {
+            info.put("type", "object");
+        } else if (elementClass != Object.class && !isPlatformClass(elementClass)) {
+            if (resolution.path.contains(elementClass)) {
+                resolution.cycles++;
+                info.put("type", "object");
+            } else {
+                Map<Object, Object> properties = getProperties(elementClass, resolution);
+                if (!properties.isEmpty()) {
+                    info.put("properties", properties);
+                }
+            }
+        }
+        if (field.isAnnotationPresent(NotAnalyzed.class)) {
+            info.put("index", "not_analyzed");
+        } else if (field.isAnnotationPresent(NotIndexed.class)) {
+            info.put("index", "no");
+        } else if (field.isAnnotationPresent(Nested.class)) {
+            info.put("type", "nested");
+        }
+        putFieldOptions(field, info);
+        Analyzer analyzer = field.getAnnotation(Analyzer.class);
+        if (analyzer != null) {
+            info.put("analyzer", analyzer.value());
+        }
+        return info;
+    }
+
+    private void putFieldOptions(Field field, Map<Object, Object> info) {
+        DocValues docValues = field.getAnnotation(DocValues.class);
+        if (docValues != null) {
+            info.put("doc_values", docValues.value());
+        }
+        Norms norms = field.getAnnotation(Norms.class);
+        if (norms != null) {
+            Map<String, Object> normsMapping = new TreeMap<>();
+            normsMapping.put("enabled", norms.enabled());
+            if (norms.loading() != NormsLoading.NONE) {
+                normsMapping.put("loading", norms.loading().toString());
+            }
+            info.put("norms", normsMapping);
+        }
+        IndexOptions indexOptions = field.getAnnotation(IndexOptions.class);
+        if (indexOptions != null) {
+            info.put("index_options", indexOptions.value().toString());
+        }
+        IncludeInAll includeInAll = field.getAnnotation(IncludeInAll.class);
+        if (includeInAll != null) {
+            info.put("include_in_all", includeInAll.value());
+        }
+    }
+
+    /**
+     * campos não estáticos e não ignorados da classe e de suas superclasses,
+     * na mesma ordem em que o Gson os serializa.
+     */
+    private List<Field> getMappableFields(Class<?> clazz) {
+        List<Field> cached = fieldsCache.get(clazz);
+        if (cached != null) {
+            return cached;
+        }
+        List<Field> fields = new ArrayList<>();
+        for (Class<?> current = clazz; current != null && current != Object.class; current = current.getSuperclass()) {
+            for (Field field : current.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers())
+                        || Modifier.isTransient(field.getModifiers())
+                        || field.isSynthetic()
+                        || field.isAnnotationPresent(Ignored.class)) {
+                    continue;
+                }
+                fields.add(field);
+            }
+        }
+        fields = Collections.unmodifiableList(fields);
+        List<Field> previous = fieldsCache.putIfAbsent(clazz, fields);
+        return previous != null ? previous : fields;
+    }
+
+    /**
+     * desce por arrays e coleções até o tipo do elemento, por exemplo
+     * {@code List<Set<Foo>>} e {@code Foo[][]} resolvem para {@code Foo}.
+     * Coleções sem parâmetro de tipo resolvem para Object.
+     */
+    private Type getElementType(Type type) {
+        if (type instanceof GenericArrayType) {
+            return getElementType(((GenericArrayType) type).getGenericComponentType());
+        }
+        if (type instanceof Class && ((Class<?>) type).isArray()) {
+            return getElementType(((Class<?>) type).getComponentType());
+        }
+        if (type instanceof Class && Iterable.class.isAssignableFrom((Class<?>) type)) {
+            return Object.class;
+        }
+        if (type instanceof ParameterizedType) {
+            ParameterizedType parameterized = (ParameterizedType) type;
+            Class<?> raw = getRawClass(parameterized.getRawType());
+            if (Iterable.class.isAssignableFrom(raw)) {
+                return getElementType(parameterized.getActualTypeArguments()[0]);
+            }
+            return raw;
+        }
+        if (type instanceof WildcardType || type instanceof TypeVariable) {
+            return getElementType(getRawClass(type));
+        }
+        return type;
+    }
+
+    /**
+     * classes da plataforma que não são tipos básicos não têm seus campos
+     * internos mapeados, pois o Gson não os grava como tal; ficam a cargo do
+     * mapeamento dinâmico.
+     */
+    private boolean isPlatformClass(Class<?> clazz) {
+        String name = clazz.getName();
+        return name.startsWith("java.") || name.startsWith("javax.");
+    }
+
+    private Class<?> getRawClass(Type type) {
+        if (type instanceof Class) {
+            return (Class<?>) type;
+        }
+        if (type instanceof ParameterizedType) {
+            return getRawClass(((ParameterizedType) type).getRawType());
+        }
+        if (type instanceof GenericArrayType) {
+            return getRawClass(((GenericArrayType) type).getGenericComponentType());
+        }
+        if (type instanceof WildcardType) {
+            return getRawClass(((WildcardType) type).getUpperBounds()[0]);
+        }
+        if (type instanceof TypeVariable) {
+            return getRawClass(((TypeVariable<?>) type).getBounds()[0]);
+        }
+        return Object.class;
+    }
+
+    /**
+     * estado de uma geração de mapeamento: as classes no caminho atual e
+     * quantos ciclos foram interrompidos.
+     */
+    private static class Resolution {
+
+        private final Set<Class<?>> path = new HashSet<>();
+        private int cycles;
+    }
+
+}
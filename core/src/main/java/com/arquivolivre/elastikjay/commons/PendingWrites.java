@@ -0,0 +1,54 @@
+package com.arquivolivre.elastikjay.commons;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lote de escritas pendentes no modo de coalescência. Todas as escritas
+ * passam pelo mesmo mapa ordenado: uma nova escrita para um (indice, tipo, id)
+ * já presente remove a anterior e entra no fim, então o lote enviado contém a
+ * última escrita de cada chave na posição em que ela foi feita. Escritas sem
+ * id nunca são coalescidas e mantêm sua posição.
+ *
+ * @author Thiago da Silva Gonzaga <thiagosg@sjrp.unesp.br>
+ * @param <W> tipo da escrita
+ */
+class PendingWrites<W> {
+
+    private final Map<Object, W> writes = new LinkedHashMap<>();
+
+    /**
+     *
+     * @param key chave do documento, ou null caso a escrita não tenha id
+     * @param write escrita a ser enviada
+     * @return true caso uma escrita anterior para a mesma chave tenha sido
+     * descartada
+     */
+    boolean add(DocumentKey key, W write) {
+        if (key == null) {
+            writes.put(new Object(), write);
+            return false;
+        }
+        boolean coalesced = writes.remove(key) != null;
+        writes.put(key, write);
+        return coalesced;
+    }
+
+    /**
+     * remove e retorna as escritas pendentes, na ordem em que serão enviadas.
+     *
+     * @return escritas pendentes
+     */
+    List<W> drain() {
+        List<W> result = new ArrayList<>(writes.values());
+        writes.clear();
+        return result;
+    }
+
+    int size() {
+        return writes.size();
+    }
+
+}
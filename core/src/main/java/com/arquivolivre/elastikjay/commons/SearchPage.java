@@ -0,0 +1,133 @@
+package com.arquivolivre.elastikjay.commons;
+
+import com.google.gson.Gson;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import org.apache.log4j.Logger;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHits;
+
+/**
+ * Página de resultados de um {@link TypedSearch}. Os documentos são
+ * convertidos para a classe apenas quando o iterador chega até eles, direto
+ * dos bytes do _source, sem montar uma lista nem uma String intermediária.
+ *
+ * @author Thiago da Silva Gonzaga <thiagosg@sjrp.unesp.br>
+ * @param <A> tipo dos documentos
+ */
+public class SearchPage<A> implements Iterable<A> {
+
+    private final SearchHits hits;
+    private final Class<A> clazz;
+    private final Gson gson = GsonFactory.getGson();
+    private final Logger logger = Logger.getLogger(SearchPage.class);
+
+    SearchPage(SearchHits hits, Class<A> clazz) {
+        this.hits = hits;
+        this.clazz = clazz;
+    }
+
+    /**
+     *
+     * @return número total de documentos que atendem à consulta
+     */
+    public long getTotalHits() {
+        return hits.getTotalHits();
+    }
+
+    /**
+     *
+     * @return número de documentos nesta página
+     */
+    public int size() {
+        return hits.getHits().length;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * valores de ordenação do último documento da página, para serem passados
+     * a {@link TypedSearch#after(Object...)} ao buscar a próxima página.
+     *
+     * @return valores de ordenação, ou null caso a página esteja vazia
+     * @throws IllegalStateException caso a consulta não tenha ordenação
+     */
+    public Object[] getAfter() {
+        SearchHit[] page = hits.getHits();
+        if (page.length == 0) {
+            return null;
+        }
+        Object[] sortValues = page[page.length - 1].getSortValues();
+        if (sortValues.length == 0) {
+            throw new IllegalStateException("The page was not sorted; call sort() before paging with after().");
+        }
+        Object[] after = new Object[sortValues.length];
+        for (int i = 0; i < sortValues.length; i++) {
+            Object value = sortValues[i];
+            after[i] = value == null || value instanceof Number || value instanceof Boolean ? value : value.toString();
+        }
+        return after;
+    }
+
+    /**
+     * ids dos documentos na página, sem converter os documentos.
+     *
+     * @return ids na ordem da página
+     */
+    public String[] getIds() {
+        SearchHit[] page = hits.getHits();
+        String[] ids = new String[page.length];
+        for (int i = 0; i < page.length; i++) {
+            ids[i] = page[i].getId();
+        }
+        return ids;
+    }
+
+    @Override
+    public Iterator<A> iterator() {
+        return new Iterator<A>() {
+
+            private final SearchHit[] page = hits.getHits();
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < page.length;
+            }
+
+            @Override
+            public A next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return convert(page[next++]);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private A convert(SearchHit hit) {
+        BytesReference source = hit.sourceRef();
+        if (source == null) {
+            return null;
+        }
+        try (Reader reader = new InputStreamReader(source.streamInput(), StandardCharsets.UTF_8)) {
+            return gson.fromJson(reader, clazz);
+        } catch (IOException ex) {
+            logger.error(String.format("Error while reading object (id: %s).", hit.getId()), ex);
+            return null;
+        }
+    }
+
+}
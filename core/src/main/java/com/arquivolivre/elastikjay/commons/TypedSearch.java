@@ -0,0 +1,210 @@
+package com.arquivolivre.elastikjay.commons;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchType;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.index.query.FilterBuilder;
+import org.elasticsearch.index.query.FilterBuilders;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.index.query.RangeFilterBuilder;
+import org.elasticsearch.search.aggregations.AbstractAggregationBuilder;
+import org.elasticsearch.search.aggregations.Aggregations;
+import org.elasticsearch.search.sort.SortOrder;
+
+/**
+ * Consulta ao indice de uma classe anotada com {@code @Index}.
+ *
+ * <p>
+ * Sem {@link #sort(String, SortOrder)} os resultados vêm ordenados por
+ * relevância (_score). A paginação profunda segue o estilo search_after:
+ * quando há ordenação ou {@link #after(Object...)}, a ordenação termina em
+ * _uid, e {@link #after(Object...)} recebe os valores de ordenação do último
+ * documento da página anterior ({@link SearchPage#getAfter()}), que são
+ * convertidos em um filtro. Não há custo de from/size crescente nem contexto
+ * de scroll aberto no cluster. Os campos de ordenação não devem ter valores
+ * ausentes, e a paginação não aceita ordenação por _score.</p>
+ *
+ * <p>
+ * O desempate por _uid carrega o fielddata de _uid na heap dos nós de dados,
+ * proporcional ao número de documentos do indice.</p>
+ *
+ * @author Thiago da Silva Gonzaga <thiagosg@sjrp.unesp.br>
+ * @param <A> tipo dos documentos
+ */
+public class TypedSearch<A> {
+
+    public static final int DEFAULT_SIZE = 10;
+    private static final String UID_FIELD = "_uid";
+    private static final String SCORE_FIELD = "_score";
+
+    private final Client client;
+    private final IndexInfo indexInfo;
+    private final Class<A> clazz;
+    private QueryBuilder query;
+    private FilterBuilder filter;
+    private String[] fields;
+    private int size = DEFAULT_SIZE;
+    private final Map<String, SortOrder> sorts = new LinkedHashMap<>();
+    private Object[] after;
+
+    TypedSearch(Client client, IndexInfo indexInfo, Class<A> clazz) {
+        this.client = client;
+        this.indexInfo = indexInfo;
+        this.clazz = clazz;
+    }
+
+    public TypedSearch<A> query(QueryBuilder query) {
+        this.query = query;
+        return this;
+    }
+
+    public TypedSearch<A> filter(FilterBuilder filter) {
+        this.filter = filter;
+        return this;
+    }
+
+    /**
+     * restringe o _source retornado aos campos informados. Os objetos
+     * retornados terão apenas esses campos preenchidos.
+     *
+     * @param fields nomes dos campos, aceitando curingas
+     * @return esta consulta
+     */
+    public TypedSearch<A> fields(String... fields) {
+        this.fields = fields;
+        return this;
+    }
+
+    public TypedSearch<A> size(int size) {
+        this.size = size;
+        return this;
+    }
+
+    public TypedSearch<A> sort(String field, SortOrder order) {
+        sorts.put(field, order);
+        return this;
+    }
+
+    /**
+     * continua a busca após o documento com os valores de ordenação
+     * informados.
+     *
+     * @param sortValues valores retornados por {@link SearchPage#getAfter()}
+     * @return esta consulta
+     */
+    public TypedSearch<A> after(Object... sortValues) {
+        this.after = sortValues;
+        return this;
+    }
+
+    /**
+     * executa a consulta e retorna uma página de resultados.
+     *
+     * @return página de resultados
+     */
+    public SearchPage<A> execute() {
+        Map<String, SortOrder> order = getSorts();
+        SearchRequestBuilder request = prepare(afterFilter(order)).setSize(size);
+        for (Map.Entry<String, SortOrder> sort : order.entrySet()) {
+            request.addSort(sort.getKey(), sort.getValue());
+        }
+        if (fields != null) {
+            request.setFetchSource(fields, null);
+        }
+        SearchResponse response = request.execute().actionGet();
+        return new SearchPage<>(response.getHits(), clazz);
+    }
+
+    /**
+     * conta os documentos que atendem à consulta, sem retorná-los.
+     *
+     * @return número de documentos
+     */
+    public long count() {
+        return client.prepareCount(indexInfo.getName())
+                .setTypes(indexInfo.getType())
+                .setQuery(buildQuery(null))
+                .execute()
+                .actionGet()
+                .getCount();
+    }
+
+    /**
+     * calcula as agregações sobre os documentos que atendem à consulta, sem
+     * retorná-los.
+     *
+     * @param aggregations agregações a calcular
+     * @return resultado das agregações
+     */
+    public Aggregations aggregate(AbstractAggregationBuilder... aggregations) {
+        SearchRequestBuilder request = prepare(null).setSearchType(SearchType.COUNT);
+        for (AbstractAggregationBuilder aggregation : aggregations) {
+            request.addAggregation(aggregation);
+        }
+        return request.execute().actionGet().getAggregations();
+    }
+
+    private SearchRequestBuilder prepare(FilterBuilder extraFilter) {
+        return client.prepareSearch(indexInfo.getName())
+                .setTypes(indexInfo.getType())
+                .setQuery(buildQuery(extraFilter));
+    }
+
+    QueryBuilder buildQuery(FilterBuilder extraFilter) {
+        QueryBuilder base = query != null ? query : QueryBuilders.matchAllQuery();
+        FilterBuilder combined = filter;
+        if (extraFilter != null) {
+            combined = combined != null ? FilterBuilders.andFilter(combined, extraFilter) : extraFilter;
+        }
+        return combined != null ? QueryBuilders.filteredQuery(base, combined) : base;
+    }
+
+    /**
+     * o desempate por _uid só é adicionado quando há ordenação explícita ou
+     * paginação com after(); sem eles a busca mantém a ordenação por _score
+     * do elasticsearch e não carrega o fielddata de _uid na heap.
+     */
+    Map<String, SortOrder> getSorts() {
+        Map<String, SortOrder> order = new LinkedHashMap<>(sorts);
+        if ((!order.isEmpty() || after != null) && !order.containsKey(UID_FIELD)) {
+            order.put(UID_FIELD, SortOrder.ASC);
+        }
+        return order;
+    }
+
+    /**
+     * filtro que seleciona os documentos posteriores a {@link #after} na
+     * ordenação: (s1 > v1) ou (s1 = v1 e s2 > v2) ou ... O _score não é um
+     * campo do indice, então não pode ser filtrado.
+     */
+    FilterBuilder afterFilter(Map<String, SortOrder> order) {
+        if (after == null) {
+            return null;
+        }
+        if (order.containsKey(SCORE_FIELD)) {
+            throw new IllegalArgumentException("Paging with after() is not supported when sorting by _score.");
+        }
+        if (after.length != order.size()) {
+            throw new IllegalArgumentException(String.format("Expected %d sort values but got %d.", order.size(), after.length));
+        }
+        List<String> names = new ArrayList<>(order.keySet());
+        FilterBuilder[] alternatives = new FilterBuilder[names.size()];
+        for (int i = 0; i < names.size(); i++) {
+            FilterBuilder[] conditions = new FilterBuilder[i + 1];
+            for (int j = 0; j < i; j++) {
+                conditions[j] = FilterBuilders.termFilter(names.get(j), after[j]);
+            }
+            RangeFilterBuilder range = FilterBuilders.rangeFilter(names.get(i));
+            conditions[i] = order.get(names.get(i)) == SortOrder.DESC ? range.lt(after[i]) : range.gt(after[i]);
+            alternatives[i] = conditions.length == 1 ? conditions[0] : FilterBuilders.andFilter(conditions);
+        }
+        return alternatives.length == 1 ? alternatives[0] : FilterBuilders.orFilter(alternatives);
+    }
+
+}
@@ -5,10 +5,20 @@
  */
 package com.arquivolivre.elastikjay.commons;
 
-import java.lang.reflect.ParameterizedType;
-import java.lang.reflect.Type;
-import java.util.Arrays;
-import java.util.List;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.URL;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
 
 /**
  *
@@ -16,14 +26,60 @@ import java.util.List;
  */
 public class Types {
 
-    private static final List<String> types = Arrays.asList("string", "integer", "long", "float", "double", "boolean");
+    private static final Map<Class<?>, String> types;
 
-    public static boolean isGeneric(Type type) {
-        return type instanceof ParameterizedType;
+    static {
+        Map<Class<?>, String> map = new HashMap<>();
+        map.put(String.class, "string");
+        map.put(StringBuilder.class, "string");
+        map.put(StringBuffer.class, "string");
+        map.put(UUID.class, "string");
+        map.put(URL.class, "string");
+        map.put(URI.class, "string");
+        map.put(Locale.class, "string");
+        map.put(Currency.class, "string");
+        map.put(Character.class, "string");
+        map.put(char.class, "string");
+        map.put(Integer.class, "integer");
+        map.put(int.class, "integer");
+        map.put(Long.class, "long");
+        map.put(long.class, "long");
+        map.put(BigInteger.class, "long");
+        map.put(Short.class, "short");
+        map.put(short.class, "short");
+        map.put(Byte.class, "byte");
+        map.put(byte.class, "byte");
+        map.put(Float.class, "float");
+        map.put(float.class, "float");
+        map.put(Double.class, "double");
+        map.put(double.class, "double");
+        map.put(BigDecimal.class, "double");
+        map.put(Boolean.class, "boolean");
+        map.put(boolean.class, "boolean");
+        types = Collections.unmodifiableMap(map);
     }
 
-    public static boolean isBasicType(String name) {
-        return types.contains(name);
+    /**
+     * retorna o tipo do elasticsearch correspondente à classe, de acordo com
+     * a forma como o {@link GsonFactory} a grava: classes gravadas como texto
+     * são string e datas são date.
+     *
+     * @param clazz classe do campo
+     * @return nome do tipo, ou null caso a classe seja um objeto
+     */
+    public static String typeOf(Class<?> clazz) {
+        String type = types.get(clazz);
+        if (type != null) {
+            return type;
+        }
+        if (clazz.isEnum() || InetAddress.class.isAssignableFrom(clazz)) {
+            return "string";
+        }
+        if (Date.class.isAssignableFrom(clazz)
+                || (Calendar.class.isAssignableFrom(clazz) && clazz.isAssignableFrom(GregorianCalendar.class))) {
+            return "date";
+        }
+        return null;
     }
 
 }
@@ -0,0 +1,214 @@
+package com.arquivolivre.elastikjay.commons;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author Thiago da Silva Gonzaga <thiagosg@sjrp.unesp.br>
+ */
+public class BulkImporterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private BulkImporter importer;
+
+    @Before
+    public void setUp() {
+        importer = BulkImporter.build(null);
+    }
+
+    private File file(String content) throws IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private FileChannel channel(String content) throws IOException {
+        return FileChannel.open(file(content).toPath(), StandardOpenOption.READ);
+    }
+
+    /**
+     * IndexManager que apenas informa o indice, suficiente para importações
+     * que não enviam nenhum bloco.
+     */
+    private IndexManager indexManagerStub() {
+        return (IndexManager) Proxy.newProxyInstance(IndexManager.class.getClassLoader(), new Class<?>[]{IndexManager.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                return method.getName().equals("getIndexInfo") ? new IndexInfo("index", "type") : null;
+            }
+        });
+    }
+
+    private BulkImporter.Job job(long start, long totalBytes) {
+        return importer.new Job(null, null, null, null, start, totalBytes);
+    }
+
+    private static class RecordingListener implements ImportListener {
+
+        private final List<Long> checkpoints = Collections.synchronizedList(new ArrayList<Long>());
+        private final List<Long> documents = Collections.synchronizedList(new ArrayList<Long>());
+
+        @Override
+        public void onProgress(ImportProgress progress) {
+            checkpoints.add(progress.getCheckpoint());
+            documents.add(progress.getDocuments());
+        }
+    }
+
+    @Test
+    public void it_should_split_csv_values() {
+        assertArrayEquals(new String[]{"a", "b", "c"}, BulkImporter.parseCsvLine("a,b,c"));
+        assertArrayEquals(new String[]{"a", "", ""}, BulkImporter.parseCsvLine("a,,"));
+        assertArrayEquals(new String[]{""}, BulkImporter.parseCsvLine(""));
+    }
+
+    @Test
+    public void it_should_read_quoted_csv_values() {
+        assertArrayEquals(new String[]{"a,b", "say \"hi\"", "c"}, BulkImporter.parseCsvLine("\"a,b\",\"say \"\"hi\"\"\",c"));
+        assertArrayEquals(new String[]{"", "x"}, BulkImporter.parseCsvLine("\"\",x"));
+    }
+
+    @Test
+    public void it_should_end_chunks_at_the_last_line_break() throws IOException {
+        importer.setChunkSize(10);
+        try (FileChannel channel = channel("aaa\nbbb\nccc\nddd\n")) {
+            assertEquals(8, importer.findChunkEnd(channel, 0, channel.size(), false));
+            assertEquals(16, importer.findChunkEnd(channel, 8, channel.size(), false));
+        }
+    }
+
+    @Test
+    public void it_should_find_the_first_line_break() throws IOException {
+        try (FileChannel channel = channel("id,name\n1,a\n2,b\n")) {
+            assertEquals(8, importer.findChunkEnd(channel, 0, channel.size(), true));
+        }
+    }
+
+    @Test
+    public void it_should_grow_the_window_for_long_lines() throws IOException {
+        importer.setChunkSize(4);
+        try (FileChannel channel = channel("aaaaaaaaaa\nbb\ncccccccccccccccc\n")) {
+            assertEquals(14, importer.findChunkEnd(channel, 0, channel.size(), false));
+        }
+    }
+
+    @Test
+    public void it_should_advance_the_checkpoint_over_contiguous_chunks() {
+        BulkImporter.Job job = job(0, 30);
+        job.chunkDone(10, 20, 5, 0, true);
+        job.chunkDone(20, 30, 5, 0, true);
+        assertEquals(0, job.getProgress().getCheckpoint());
+        job.chunkDone(0, 10, 5, 0, true);
+        ImportProgress progress = job.getProgress();
+        assertEquals(30, progress.getCheckpoint());
+        assertEquals(15, progress.getDocuments());
+        assertEquals(30, progress.getTotalBytes());
+    }
+
+    @Test
+    public void it_should_hold_the_checkpoint_at_unindexed_chunks() {
+        BulkImporter.Job job = job(0, 30);
+        job.chunkDone(0, 10, 5, 0, true);
+        job.chunkDone(10, 20, 4, 1, false);
+        job.chunkDone(20, 30, 5, 0, true);
+        ImportProgress progress = job.getProgress();
+        assertEquals(10, progress.getCheckpoint());
+        assertEquals(14, progress.getDocuments());
+        assertEquals(1, progress.getFailures());
+    }
+
+    @Test
+    public void it_should_report_progress_in_order() throws InterruptedException {
+        final int chunks = 1000;
+        RecordingListener listener = new RecordingListener();
+        importer.setListener(listener);
+        final BulkImporter.Job job = job(0, chunks * 10);
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < chunks; i++) {
+            order.add(i);
+        }
+        Collections.shuffle(order);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (final int chunk : order) {
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    job.chunkDone(chunk * 10, chunk * 10 + 10, 1, 0, true);
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(chunks, listener.checkpoints.size());
+        for (int i = 1; i < chunks; i++) {
+            assertTrue(listener.checkpoints.get(i) >= listener.checkpoints.get(i - 1));
+            assertEquals(i + 1, (long) listener.documents.get(i));
+        }
+        assertEquals(chunks * 10, (long) listener.checkpoints.get(chunks - 1));
+    }
+
+    @Test
+    public void it_should_skip_the_csv_header_when_resuming() throws IOException, InterruptedException {
+        importer = BulkImporter.build(indexManagerStub());
+        importer.setFormat(ImportFormat.CSV);
+        File file = file("id,name\n");
+        assertEquals(8, importer.importFile(file, Object.class));
+        assertEquals(8, importer.importFile(file, Object.class, 3));
+    }
+
+    @Test
+    public void it_should_resume_csv_imports_after_the_header() throws IOException, InterruptedException {
+        importer = BulkImporter.build(indexManagerStub());
+        importer.setFormat(ImportFormat.CSV);
+        File file = file("id,name\n1,a\n2,b\n");
+        assertEquals(16, importer.importFile(file, Object.class, 16));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void it_should_reject_an_empty_chunk_size() {
+        importer.setChunkSize(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void it_should_reject_an_empty_thread_pool() {
+        importer.setThreads(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void it_should_reject_empty_bulks() {
+        importer.setBulkActions(0);
+    }
+
+    @Test
+    public void it_should_end_the_last_chunk_at_end_of_file() throws IOException {
+        importer.setChunkSize(100);
+        try (FileChannel channel = channel("aaa\nbbb")) {
+            assertEquals(4, importer.findChunkEnd(channel, 0, channel.size(), false));
+            assertEquals(7, importer.findChunkEnd(channel, 4, channel.size(), false));
+        }
+    }
+
+}
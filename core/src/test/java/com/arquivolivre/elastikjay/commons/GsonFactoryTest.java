@@ -0,0 +1,96 @@
+package com.arquivolivre.elastikjay.commons;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import java.sql.Timestamp;
+import java.util.Calendar;
+import java.util.Currency;
+import java.util.Date;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.Test;
+
+/**
+ *
+ * @author Thiago da Silva Gonzaga <thiagosg@sjrp.unesp.br>
+ */
+public class GsonFactoryTest {
+
+    private static final long MILLIS = 1388534400123L;
+    private static final long LEGACY_MILLIS = 1388534400000L;
+
+    static class Dates {
+
+        Date date;
+        Timestamp timestamp;
+        Calendar calendar;
+        Currency currency;
+    }
+
+    static class LegacyDates {
+
+        Date date;
+        Timestamp timestamp;
+        Calendar calendar;
+    }
+
+    @Test
+    public void it_should_write_dates_as_iso8601() {
+        Dates dates = new Dates();
+        dates.date = new Date(MILLIS);
+        dates.calendar = Calendar.getInstance();
+        dates.calendar.setTimeInMillis(MILLIS);
+        dates.currency = Currency.getInstance("BRL");
+        JsonObject json = GsonFactory.getGson().toJsonTree(dates).getAsJsonObject();
+        assertEquals("2014-01-01T00:00:00.123Z", json.get("date").getAsString());
+        assertEquals("2014-01-01T00:00:00.123Z", json.get("calendar").getAsString());
+        assertEquals("BRL", json.get("currency").getAsString());
+    }
+
+    @Test
+    public void it_should_read_dates_back() {
+        Gson gson = GsonFactory.getGson();
+        Dates dates = gson.fromJson("{\"date\":\"2014-01-01T00:00:00.123Z\",\"timestamp\":\"2014-01-01T02:00:00.123+02:00\","
+                + "\"calendar\":" + MILLIS + ",\"currency\":\"BRL\"}", Dates.class);
+        assertEquals(MILLIS, dates.date.getTime());
+        assertEquals(MILLIS, dates.timestamp.getTime());
+        assertEquals(MILLIS, dates.calendar.getTimeInMillis());
+        assertEquals(Currency.getInstance("BRL"), dates.currency);
+    }
+
+    @Test
+    public void it_should_keep_nulls_null() {
+        Dates dates = GsonFactory.getGson().fromJson("{\"date\":null}", Dates.class);
+        assertNull(dates.date);
+    }
+
+    @Test
+    public void it_should_read_dates_written_by_the_default_gson() {
+        LegacyDates legacy = new LegacyDates();
+        legacy.date = new Date(LEGACY_MILLIS);
+        legacy.timestamp = new Timestamp(LEGACY_MILLIS);
+        legacy.calendar = Calendar.getInstance();
+        legacy.calendar.setTimeInMillis(LEGACY_MILLIS);
+        LegacyDates dates = GsonFactory.getGson().fromJson(new Gson().toJson(legacy), LegacyDates.class);
+        assertEquals(LEGACY_MILLIS, dates.date.getTime());
+        assertEquals(LEGACY_MILLIS, dates.timestamp.getTime());
+        assertEquals(LEGACY_MILLIS, dates.calendar.getTimeInMillis());
+    }
+
+    @Test
+    public void it_should_read_the_legacy_us_date_format() {
+        Calendar midnight = Calendar.getInstance();
+        midnight.clear();
+        midnight.set(2014, Calendar.JANUARY, 1);
+        Dates dates = GsonFactory.getGson().fromJson("{\"date\":\"Jan 1, 2014 12:00:00 AM\","
+                + "\"calendar\":{\"year\":2014,\"month\":0,\"dayOfMonth\":1,\"hourOfDay\":0,\"minute\":0,\"second\":0}}", Dates.class);
+        assertEquals(midnight.getTimeInMillis(), dates.date.getTime());
+        assertEquals(midnight.getTimeInMillis(), dates.calendar.getTimeInMillis());
+    }
+
+    @Test
+    public void it_should_parse_date_only_values() {
+        assertEquals(1388534400000L, GsonFactory.parseDate("2014-01-01"));
+    }
+
+}
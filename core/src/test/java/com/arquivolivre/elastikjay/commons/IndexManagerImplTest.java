@@ -0,0 +1,81 @@
+package com.arquivolivre.elastikjay.commons;
+
+import com.arquivolivre.elastikyjay.annotations.DisableAll;
+import com.arquivolivre.elastikyjay.annotations.Index;
+import com.arquivolivre.elastikyjay.annotations.Source;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Thiago da Silva Gonzaga <thiagosg@sjrp.unesp.br>
+ */
+public class IndexManagerImplTest {
+
+    private IndexManagerImpl indexManager;
+
+    @Before
+    public void setUp() {
+        indexManager = IndexManagerImpl.build(null);
+    }
+
+    @Index(name = "plain", type = "plain")
+    static class Plain {
+
+        String name;
+    }
+
+    @DisableAll
+    @Source(includes = {"name", "meta.*"}, excludes = "meta.secret")
+    @Index(name = "trimmed", type = "trimmed")
+    static class Trimmed {
+
+        String name;
+    }
+
+    @Source(enabled = false)
+    @Index(name = "sourceless", type = "sourceless")
+    static class Sourceless {
+
+        String name;
+    }
+
+    private JsonObject mapping(Class<?> clazz, String type) {
+        return new JsonParser().parse(indexManager.generateMapping(clazz)).getAsJsonObject().getAsJsonObject(type);
+    }
+
+    @Test
+    public void it_should_not_add_type_options_by_default() {
+        JsonObject mapping = mapping(Plain.class, "plain");
+        assertFalse(mapping.has("_all"));
+        assertFalse(mapping.has("_source"));
+        assertTrue(mapping.getAsJsonObject("properties").has("name"));
+    }
+
+    @Test
+    public void it_should_put_type_options_next_to_properties() {
+        JsonObject mapping = mapping(Trimmed.class, "trimmed");
+        assertFalse(mapping.getAsJsonObject("_all").get("enabled").getAsBoolean());
+        JsonObject source = mapping.getAsJsonObject("_source");
+        assertFalse(source.has("enabled"));
+        JsonArray includes = source.getAsJsonArray("includes");
+        assertEquals(2, includes.size());
+        assertEquals("meta.*", includes.get(1).getAsString());
+        assertEquals("meta.secret", source.getAsJsonArray("excludes").get(0).getAsString());
+        assertTrue(mapping.getAsJsonObject("properties").has("name"));
+    }
+
+    @Test
+    public void it_should_disable_source() {
+        JsonObject source = mapping(Sourceless.class, "sourceless").getAsJsonObject("_source");
+        assertFalse(source.get("enabled").getAsBoolean());
+        assertEquals(1, source.entrySet().size());
+    }
+
+}
@@ -0,0 +1,106 @@
+package com.arquivolivre.elastikjay.commons;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author Thiago da Silva Gonzaga <thiagosg@sjrp.unesp.br>
+ */
+public class IngestQueueTest {
+
+    private IngestQueue.Entry entry(String id, int size) {
+        return new IngestQueue.Entry("index", "type", id, new byte[size]);
+    }
+
+    @Test
+    public void it_should_reject_when_full() throws InterruptedException {
+        IngestQueue queue = new IngestQueue(2, 100, BackpressurePolicy.REJECT, 0);
+        assertTrue(queue.offer(entry("1", 10)));
+        assertTrue(queue.offer(entry("2", 10)));
+        assertFalse(queue.offer(entry("3", 10)));
+        assertEquals(2, queue.getDepth());
+        assertEquals(20, queue.getSizeInBytes());
+        assertEquals(1, queue.getRejectedCount());
+    }
+
+    @Test
+    public void it_should_limit_by_bytes() throws InterruptedException {
+        IngestQueue queue = new IngestQueue(10, 25, BackpressurePolicy.REJECT, 0);
+        assertTrue(queue.offer(entry("1", 10)));
+        assertTrue(queue.offer(entry("2", 10)));
+        assertFalse(queue.offer(entry("3", 10)));
+        assertTrue(queue.offer(entry("4", 5)));
+    }
+
+    @Test
+    public void it_should_reject_entries_larger_than_the_queue() throws InterruptedException {
+        IngestQueue queue = new IngestQueue(10, 5, BackpressurePolicy.BLOCK, 0);
+        assertFalse(queue.offer(entry("1", 6)));
+        assertEquals(1, queue.getRejectedCount());
+        assertEquals(0, queue.getDepth());
+    }
+
+    @Test
+    public void it_should_drop_oldest_when_full() throws InterruptedException {
+        IngestQueue queue = new IngestQueue(2, 100, BackpressurePolicy.DROP_OLDEST, 0);
+        for (int i = 1; i <= 5; i++) {
+            assertTrue(queue.offer(entry(String.valueOf(i), 10)));
+        }
+        assertEquals(3, queue.getDroppedCount());
+        List<IngestQueue.Entry> drained = queue.drain(10);
+        assertEquals(2, drained.size());
+        assertEquals("4", drained.get(0).getId());
+        assertEquals("5", drained.get(1).getId());
+        assertEquals(0, queue.getSizeInBytes());
+    }
+
+    @Test
+    public void it_should_time_out_when_full() throws InterruptedException {
+        IngestQueue queue = new IngestQueue(1, 100, BackpressurePolicy.TIMEOUT, 20);
+        assertTrue(queue.offer(entry("1", 10)));
+        assertFalse(queue.offer(entry("2", 10)));
+        assertEquals(1, queue.getTimedOutCount());
+        assertTrue(queue.getTotalWaitMillis() >= 15);
+    }
+
+    @Test
+    public void it_should_block_until_drained() throws Exception {
+        final IngestQueue queue = new IngestQueue(1, 100, BackpressurePolicy.BLOCK, 0);
+        assertTrue(queue.offer(entry("1", 10)));
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicBoolean offered = new AtomicBoolean();
+        Thread producer = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    offered.set(queue.offer(entry("2", 10)));
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        producer.start();
+        started.await();
+        Thread.sleep(50);
+        assertFalse(offered.get());
+        assertEquals(1, queue.drain(1).size());
+        producer.join(1000);
+        assertTrue(offered.get());
+        assertEquals("2", queue.drain(1).get(0).getId());
+        assertTrue(queue.getTotalWaitMillis() > 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void it_should_not_accept_negative_timeout() {
+        new IngestQueue(1, 100, BackpressurePolicy.TIMEOUT, -1);
+    }
+
+}
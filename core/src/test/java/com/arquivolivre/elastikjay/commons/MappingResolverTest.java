@@ -0,0 +1,178 @@
+package com.arquivolivre.elastikjay.commons;
+
+import com.arquivolivre.elastikyjay.annotations.DocValues;
+import com.arquivolivre.elastikyjay.annotations.Ignored;
+import com.arquivolivre.elastikyjay.annotations.IncludeInAll;
+import com.arquivolivre.elastikyjay.annotations.IndexOptions;
+import com.arquivolivre.elastikyjay.annotations.IndexOptionsType;
+import com.arquivolivre.elastikyjay.annotations.Nested;
+import com.arquivolivre.elastikyjay.annotations.Norms;
+import com.arquivolivre.elastikyjay.annotations.NormsLoading;
+import com.arquivolivre.elastikyjay.annotations.NotAnalyzed;
+import java.net.URI;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Thiago da Silva Gonzaga <thiagosg@sjrp.unesp.br>
+ */
+public class MappingResolverTest {
+
+    private MappingResolver resolver;
+
+    @Before
+    public void setUp() {
+        resolver = new MappingResolver();
+    }
+
+    enum Status {
+
+        ACTIVE, INACTIVE
+    }
+
+    static class Base {
+
+        String baseName;
+    }
+
+    static class Address {
+
+        String street;
+        int number;
+    }
+
+    static class Document extends Base {
+
+        static String constant;
+        transient String cache;
+        @Ignored
+        String ignored;
+        @NotAnalyzed
+        String code;
+        int[] numbers;
+        List<Set<Address>> addresses;
+        Address[][] grid;
+        Map<String, Integer> attributes;
+        Status status;
+        Date created;
+        Timestamp updated;
+        Calendar calendar;
+        UUID uuid;
+        URI uri;
+        StringBuilder text;
+        ArrayList rawList;
+        Thread thread;
+    }
+
+    static class Node {
+
+        String name;
+        Node parent;
+        @Nested
+        List<Node> children;
+    }
+
+    static class Tuned {
+
+        @DocValues
+        @NotAnalyzed
+        String code;
+        @Norms
+        String title;
+        @Norms(enabled = true, loading = NormsLoading.EAGER)
+        String body;
+        @IndexOptions(IndexOptionsType.DOCS)
+        String tag;
+        @IncludeInAll(false)
+        String secret;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Object, Object> field(Map<Object, Object> properties, String name) {
+        return (Map<Object, Object>) properties.get(name);
+    }
+
+    @Test
+    public void it_should_map_basic_types_and_annotations() {
+        Map<Object, Object> properties = resolver.getProperties(Document.class);
+        assertEquals("string", field(properties, "baseName").get("type"));
+        assertEquals("not_analyzed", field(properties, "code").get("index"));
+        assertEquals("string", field(properties, "status").get("type"));
+        assertFalse(properties.containsKey("constant"));
+        assertFalse(properties.containsKey("cache"));
+        assertFalse(properties.containsKey("ignored"));
+    }
+
+    @Test
+    public void it_should_resolve_arrays_and_nested_generics() {
+        Map<Object, Object> properties = resolver.getProperties(Document.class);
+        assertEquals("integer", field(properties, "numbers").get("type"));
+        Map<Object, Object> addresses = field(field(properties, "addresses"), "properties");
+        assertEquals("string", field(addresses, "street").get("type"));
+        assertEquals("integer", field(addresses, "number").get("type"));
+        assertEquals(addresses, field(field(properties, "grid"), "properties"));
+        assertEquals("object", field(properties, "attributes").get("type"));
+    }
+
+    @Test
+    public void it_should_map_dates() {
+        Map<Object, Object> properties = resolver.getProperties(Document.class);
+        assertEquals("date", field(properties, "created").get("type"));
+        assertEquals("date", field(properties, "updated").get("type"));
+        assertEquals("date", field(properties, "calendar").get("type"));
+    }
+
+    @Test
+    public void it_should_not_map_platform_internals() {
+        Map<Object, Object> properties = resolver.getProperties(Document.class);
+        assertEquals("string", field(properties, "uuid").get("type"));
+        assertEquals("string", field(properties, "uri").get("type"));
+        assertEquals("string", field(properties, "text").get("type"));
+        assertFalse(properties.containsKey("rawList"));
+        assertFalse(properties.containsKey("thread"));
+    }
+
+    @Test
+    public void it_should_map_field_options() {
+        Map<Object, Object> properties = resolver.getProperties(Tuned.class);
+        assertEquals(true, field(properties, "code").get("doc_values"));
+        assertEquals(false, field(field(properties, "title"), "norms").get("enabled"));
+        assertFalse(field(field(properties, "title"), "norms").containsKey("loading"));
+        assertEquals(true, field(field(properties, "body"), "norms").get("enabled"));
+        assertEquals("eager", field(field(properties, "body"), "norms").get("loading"));
+        assertEquals("docs", field(properties, "tag").get("index_options"));
+        assertEquals(false, field(properties, "secret").get("include_in_all"));
+        assertFalse(field(properties, "body").containsKey("doc_values"));
+    }
+
+    @Test
+    public void it_should_stop_at_cycles() {
+        Map<Object, Object> properties = resolver.getProperties(Node.class);
+        assertEquals("string", field(properties, "name").get("type"));
+        assertEquals("object", field(properties, "parent").get("type"));
+        assertEquals("nested", field(properties, "children").get("type"));
+    }
+
+    @Test
+    public void it_should_reuse_cached_fragments() {
+        Map<Object, Object> first = resolver.getProperties(Document.class);
+        Map<Object, Object> second = resolver.getProperties(Document.class);
+        assertEquals(first, second);
+        assertSame(first.get("addresses"), second.get("addresses"));
+        assertTrue(resolver.getProperties(Address.class).containsKey("street"));
+    }
+
+}
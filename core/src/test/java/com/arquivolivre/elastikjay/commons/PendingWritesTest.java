@@ -0,0 +1,64 @@
+package com.arquivolivre.elastikjay.commons;
+
+import java.util.Arrays;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Thiago da Silva Gonzaga <thiagosg@sjrp.unesp.br>
+ */
+public class PendingWritesTest {
+
+    private PendingWrites<String> pending;
+
+    @Before
+    public void setUp() {
+        pending = new PendingWrites<>();
+    }
+
+    private DocumentKey key(String id) {
+        return new DocumentKey("index", "type", id);
+    }
+
+    @Test
+    public void it_should_keep_only_the_last_write_per_key() {
+        assertFalse(pending.add(key("1"), "a1"));
+        assertFalse(pending.add(key("2"), "b1"));
+        assertTrue(pending.add(key("1"), "a2"));
+        assertTrue(pending.add(key("1"), "a3"));
+        assertEquals(Arrays.asList("b1", "a3"), pending.drain());
+        assertEquals(0, pending.size());
+    }
+
+    @Test
+    public void it_should_keep_writes_without_id_in_order() {
+        pending.add(null, "x1");
+        pending.add(key("1"), "a1");
+        pending.add(null, "x2");
+        pending.add(key("2"), "b1");
+        pending.add(key("1"), "a2");
+        assertEquals(Arrays.asList("x1", "x2", "b1", "a2"), pending.drain());
+    }
+
+    @Test
+    public void it_should_not_coalesce_across_indices_or_types() {
+        pending.add(new DocumentKey("index", "type", "1"), "a");
+        pending.add(new DocumentKey("other", "type", "1"), "b");
+        pending.add(new DocumentKey("index", "other", "1"), "c");
+        assertEquals(3, pending.size());
+    }
+
+    @Test
+    public void it_should_compare_document_keys_by_value() {
+        assertEquals(key("1"), key("1"));
+        assertEquals(key("1").hashCode(), key("1").hashCode());
+        assertNotEquals(key("1"), key("2"));
+        assertNotEquals(key("1"), new DocumentKey("index", "type", null));
+    }
+
+}
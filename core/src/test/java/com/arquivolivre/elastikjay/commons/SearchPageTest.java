@@ -0,0 +1,90 @@
+package com.arquivolivre.elastikjay.commons;
+
+import com.google.gson.JsonSyntaxException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.text.StringText;
+import org.elasticsearch.search.internal.InternalSearchHit;
+import org.elasticsearch.search.internal.InternalSearchHits;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ *
+ * @author Thiago da Silva Gonzaga <thiagosg@sjrp.unesp.br>
+ */
+public class SearchPageTest {
+
+    static class Person {
+
+        String name;
+        int age;
+    }
+
+    private InternalSearchHit hit(int doc, String source, Object... sortValues) {
+        InternalSearchHit hit = new InternalSearchHit(doc, String.valueOf(doc), new StringText("type"), null);
+        hit.sourceRef(new BytesArray(source));
+        hit.sortValues(sortValues);
+        return hit;
+    }
+
+    private SearchPage<Person> page(InternalSearchHit... hits) {
+        return new SearchPage<>(new InternalSearchHits(hits, 42, 1f), Person.class);
+    }
+
+    @Test
+    public void it_should_describe_the_page() {
+        SearchPage<Person> page = page(hit(1, "{}"), hit(2, "{}"));
+        assertEquals(42, page.getTotalHits());
+        assertEquals(2, page.size());
+        assertFalse(page.isEmpty());
+        assertArrayEquals(new String[]{"1", "2"}, page.getIds());
+    }
+
+    @Test
+    public void it_should_return_the_last_sort_values() {
+        SearchPage<Person> page = page(hit(1, "{}", 20L, new BytesRef("type#1")), hit(2, "{}", 30L, new BytesRef("type#2")));
+        assertArrayEquals(new Object[]{30L, "type#2"}, page.getAfter());
+    }
+
+    @Test
+    public void it_should_not_page_after_an_empty_page() {
+        assertNull(page().getAfter());
+        assertTrue(page().isEmpty());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void it_should_not_page_after_an_unsorted_page() {
+        page(hit(1, "{}")).getAfter();
+    }
+
+    @Test
+    public void it_should_convert_documents_lazily() {
+        Iterator<Person> iterator = page(hit(1, "{\"name\":\"a\",\"age\":30}"), hit(2, "{\"name\":")).iterator();
+        Person first = iterator.next();
+        assertEquals("a", first.name);
+        assertEquals(30, first.age);
+        assertTrue(iterator.hasNext());
+        try {
+            iterator.next();
+            fail("the second document is malformed");
+        } catch (JsonSyntaxException ex) {
+            assertFalse(iterator.hasNext());
+        }
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void it_should_stop_at_the_end_of_the_page() {
+        Iterator<Person> iterator = page(hit(1, "{}")).iterator();
+        iterator.next();
+        iterator.next();
+    }
+
+}
@@ -0,0 +1,103 @@
+package com.arquivolivre.elastikjay.commons;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.util.Arrays;
+import java.util.Map;
+import org.elasticsearch.index.query.FilterBuilders;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.sort.SortOrder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Thiago da Silva Gonzaga <thiagosg@sjrp.unesp.br>
+ */
+public class TypedSearchTest {
+
+    private TypedSearch<Object> search;
+
+    @Before
+    public void setUp() {
+        search = new TypedSearch<>(null, new IndexInfo("index", "type"), Object.class);
+    }
+
+    private JsonObject json(Object builder) {
+        return new JsonParser().parse(builder.toString()).getAsJsonObject();
+    }
+
+    private JsonObject afterFilter() {
+        return json(search.afterFilter(search.getSorts()));
+    }
+
+    private JsonObject range(JsonObject filter, String field) {
+        return filter.getAsJsonObject("range").getAsJsonObject(field);
+    }
+
+    @Test
+    public void it_should_keep_score_ordering_without_sorts() {
+        assertTrue(search.getSorts().isEmpty());
+        assertNull(search.afterFilter(search.getSorts()));
+        assertTrue(json(search.buildQuery(null)).has("match_all"));
+    }
+
+    @Test
+    public void it_should_filter_the_query() {
+        search.query(QueryBuilders.termQuery("name", "a")).filter(FilterBuilders.termFilter("active", true));
+        JsonObject filtered = json(search.buildQuery(FilterBuilders.termFilter("age", 30))).getAsJsonObject("filtered");
+        assertTrue(filtered.getAsJsonObject("query").has("term"));
+        assertEquals(2, filtered.getAsJsonObject("filter").getAsJsonObject("and").getAsJsonArray("filters").size());
+    }
+
+    @Test
+    public void it_should_end_explicit_sorts_with_uid() {
+        search.sort("age", SortOrder.DESC);
+        Map<String, SortOrder> sorts = search.getSorts();
+        assertEquals(Arrays.asList("age", "_uid"), Arrays.asList(sorts.keySet().toArray()));
+        assertEquals(SortOrder.ASC, sorts.get("_uid"));
+    }
+
+    @Test
+    public void it_should_page_by_uid_without_sorts() {
+        search.after("type#1");
+        JsonObject uid = range(afterFilter(), "_uid");
+        assertEquals("type#1", uid.get("from").getAsString());
+        assertFalse(uid.get("include_lower").getAsBoolean());
+    }
+
+    @Test
+    public void it_should_page_after_sort_values() {
+        search.sort("age", SortOrder.DESC).sort("name", SortOrder.ASC).after(30, "b", "type#1");
+        JsonArray alternatives = afterFilter().getAsJsonObject("or").getAsJsonArray("filters");
+        assertEquals(3, alternatives.size());
+        JsonObject age = range(alternatives.get(0).getAsJsonObject(), "age");
+        assertEquals(30, age.get("to").getAsInt());
+        assertFalse(age.get("include_upper").getAsBoolean());
+        JsonArray name = alternatives.get(1).getAsJsonObject().getAsJsonObject("and").getAsJsonArray("filters");
+        assertEquals(30, name.get(0).getAsJsonObject().getAsJsonObject("term").get("age").getAsInt());
+        assertEquals("b", range(name.get(1).getAsJsonObject(), "name").get("from").getAsString());
+        JsonArray uid = alternatives.get(2).getAsJsonObject().getAsJsonObject("and").getAsJsonArray("filters");
+        assertEquals(3, uid.size());
+        assertEquals("b", uid.get(1).getAsJsonObject().getAsJsonObject("term").get("name").getAsString());
+        assertEquals("type#1", range(uid.get(2).getAsJsonObject(), "_uid").get("from").getAsString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void it_should_reject_missing_sort_values() {
+        search.sort("age", SortOrder.ASC).after(30);
+        search.afterFilter(search.getSorts());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void it_should_reject_paging_by_score() {
+        search.sort("_score", SortOrder.DESC).after(1.5f, "type#1");
+        search.afterFilter(search.getSorts());
+    }
+
+}